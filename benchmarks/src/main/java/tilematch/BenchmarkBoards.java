@@ -0,0 +1,137 @@
+package tilematch;
+
+import java.util.Random;
+
+/**
+ * Builds the boards the benchmarks run on. Boards are filled from a fixed
+ * seed, so every run of a benchmark sees the same board.
+ */
+final class BenchmarkBoards {
+    static final long SEED = 42;
+    /**
+     * How many boards a benchmark that changes its board cycles through.
+     * Each call first copies the next board over the one it changes, which
+     * costs a row-by-row array copy; timing a separate setup for every call
+     * would cost more than the work on the small boards.
+     */
+    static final int POOL_SIZE = 8;
+
+    private BenchmarkBoards() {
+    }
+
+    /**
+     * Checks a palette size against the standard palette.
+     *
+     * @param size How many colors to use, at most Palette.STANDARD.size()
+     * @return The size; boards use color ids 1 to size
+     */
+    static int palette(int size) {
+        if (size < 1 || size > Palette.STANDARD.size()) {
+            throw new IllegalArgumentException("Palette size must be 1 to " + Palette.STANDARD.size());
+        }
+        return size;
+    }
+
+    /**
+     * Draws a random board. Matches are left in, as they would be on a board
+     * mid-cascade.
+     *
+     * @param rows        The number of rows
+     * @param columns     The number of columns
+     * @param paletteSize The number of colors to draw from
+     * @return The color ids of the board, row by row
+     */
+    static int[] randomColors(int rows, int columns, int paletteSize) {
+        return randomColors(rows, columns, paletteSize, SEED);
+    }
+
+    /**
+     * Draws a random board from the specified seed.
+     *
+     * @param rows        The number of rows
+     * @param columns     The number of columns
+     * @param paletteSize The number of colors to draw from
+     * @param seed        The random seed
+     * @return The color ids of the board, row by row
+     */
+    static int[] randomColors(int rows, int columns, int paletteSize, long seed) {
+        Random random = new Random(seed);
+        int[] colors = new int[rows * columns];
+        for (int i = 0; i < colors.length; i++) {
+            colors[i] = 1 + random.nextInt(paletteSize);
+        }
+        return colors;
+    }
+
+    /**
+     * Replaces the contents of a grid.
+     *
+     * @param grid   The grid to fill
+     * @param colors The color ids of the board, row by row; 0 for empty cells
+     */
+    static void load(Grid grid, int[] colors) {
+        grid.clear();
+        int columns = grid.getColumns();
+        for (int row = 0; row < grid.getRows(); row++) {
+            for (int col = 0; col < columns; col++) {
+                int colorId = colors[row * columns + col];
+                if (colorId != Palette.EMPTY) {
+                    grid.placeBlock(Palette.STANDARD.block(Block.BlockType.STANDARD, colorId), row, col);
+                }
+            }
+        }
+    }
+
+    /**
+     * Builds a pool of random boards, each drawn from its own seed.
+     *
+     * @param rows        The number of rows
+     * @param columns     The number of columns
+     * @param paletteSize The number of colors to draw from
+     * @return {@link #POOL_SIZE} boards
+     */
+    static Grid[] randomPool(int rows, int columns, int paletteSize) {
+        Grid[] pool = new Grid[POOL_SIZE];
+        for (int i = 0; i < POOL_SIZE; i++) {
+            pool[i] = new Grid(rows, columns);
+            load(pool[i], randomColors(rows, columns, paletteSize, SEED + i));
+        }
+        return pool;
+    }
+
+    /**
+     * Builds a pool of copies of a board, each with a different fifth of its
+     * cells emptied.
+     *
+     * @param board The full board
+     * @return {@link #POOL_SIZE} boards
+     */
+    static Grid[] holedPool(Grid board) {
+        Random random = new Random(SEED);
+        Grid[] pool = new Grid[POOL_SIZE];
+        for (int i = 0; i < POOL_SIZE; i++) {
+            pool[i] = new Grid(board.getRows(), board.getColumns());
+            pool[i].copyFrom(board);
+            punchHoles(pool[i], 0.2, random);
+        }
+        return pool;
+    }
+
+    /**
+     * Empties a fraction of the cells of a grid, spread over the whole board,
+     * as a cascade would.
+     *
+     * @param grid     The grid
+     * @param fraction The fraction of cells to empty
+     * @param random   The generator choosing the cells
+     */
+    static void punchHoles(Grid grid, double fraction, Random random) {
+        for (int row = 0; row < grid.getRows(); row++) {
+            for (int col = 0; col < grid.getColumns(); col++) {
+                if (random.nextDouble() < fraction) {
+                    grid.removeBlock(row, col);
+                }
+            }
+        }
+    }
+}
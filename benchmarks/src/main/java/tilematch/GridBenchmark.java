@@ -0,0 +1,135 @@
+package tilematch;
+
+import java.awt.Graphics2D;
+import java.awt.Point;
+import java.awt.image.BufferedImage;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks the {@link Grid} operations every move goes through: flood fill,
+ * gravity and drawing the board into an offscreen image. Gravity restores
+ * its board at the start of each call from a pool of prepared boards (see
+ * {@link BenchmarkBoards#POOL_SIZE}).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GridBenchmark {
+    // Largest side of the offscreen image; cells shrink on big boards to fit
+    private static final int IMAGE_SIZE = 1024;
+
+    /**
+     * A full random board, shared by the benchmarks that do not change it.
+     */
+    @State(Scope.Thread)
+    public static class Board {
+        @Param({ "10", "64", "256", "1024" })
+        int size;
+
+        @Param({ "4", "8" })
+        int paletteSize;
+
+        Grid grid;
+        int[] colors;
+        int nextCell = 0;
+        BufferedImage image;
+        Graphics2D graphics;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            int cellSize = Math.max(1, IMAGE_SIZE / size);
+            grid = new Grid(size, size, cellSize, 0, 0);
+            colors = BenchmarkBoards.randomColors(size, size, BenchmarkBoards.palette(paletteSize));
+            BenchmarkBoards.load(grid, colors);
+            image = new BufferedImage(size * cellSize, size * cellSize, BufferedImage.TYPE_INT_RGB);
+            graphics = image.createGraphics();
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            graphics.dispose();
+        }
+    }
+
+    /**
+     * A board that cycles through copies of a random board, each with a
+     * different fifth of its cells emptied.
+     */
+    @State(Scope.Thread)
+    public static class HoledBoard {
+        @Param({ "10", "64", "256", "1024" })
+        int size;
+
+        @Param({ "4", "8" })
+        int paletteSize;
+
+        Grid grid;
+        Grid[] pool;
+        int next = 0;
+
+        @Setup(Level.Trial)
+        public void setUpBoard() {
+            grid = new Grid(size, size);
+            BenchmarkBoards.load(grid, BenchmarkBoards.randomColors(size, size,
+                    BenchmarkBoards.palette(paletteSize)));
+            pool = BenchmarkBoards.holedPool(grid);
+        }
+
+        /**
+         * Copies the next board in the pool over the board.
+         */
+        void restoreBoard() {
+            grid.copyFrom(pool[next]);
+            next = (next + 1) % pool.length;
+        }
+    }
+
+    @Benchmark
+    public Set<Point> findConnectedBlocks(Board board) {
+        // Walk the board with a large stride so each call starts in a different group
+        int cells = board.size * board.size;
+        board.nextCell = (board.nextCell + 7919) % cells;
+        int row = board.nextCell / board.size;
+        int col = board.nextCell % board.size;
+        return board.grid.findConnectedBlocks(row, col, board.colors[board.nextCell]);
+    }
+
+    @Benchmark
+    public Grid applyGravity(HoledBoard board) {
+        board.restoreBoard();
+        board.grid.applyGravity();
+        return board.grid;
+    }
+
+    /**
+     * The cost of restoring the board that {@link #applyGravity} includes.
+     */
+    @Benchmark
+    public Grid applyGravityRestore(HoledBoard board) {
+        board.restoreBoard();
+        return board.grid;
+    }
+
+    @Benchmark
+    public BufferedImage render(Board board) {
+        board.grid.render(board.graphics);
+        return board.image;
+    }
+}
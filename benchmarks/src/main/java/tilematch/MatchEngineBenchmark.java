@@ -0,0 +1,188 @@
+package tilematch;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks the match engine in {@link TileMatchingGameEnvironment}: finding
+ * matches, resolving a full cascade, generating a match-free board and
+ * refilling emptied cells. Benchmarks that change their board restore it
+ * at the start of each call from a pool of prepared boards, so that no call
+ * pays for JMH's per-invocation setup; each has a companion "Restore"
+ * benchmark measuring that copy alone, to subtract on small boards.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MatchEngineBenchmark {
+
+    /**
+     * A game on a random board with matches left in.
+     */
+    @State(Scope.Thread)
+    public static class Game {
+        @Param({ "10", "64", "256", "1024" })
+        int size;
+
+        @Param({ "4", "8" })
+        int paletteSize;
+
+        BejeweledGameState state;
+        int[] colors;
+
+        @Setup(Level.Trial)
+        public void setUpGame() {
+            state = new BejeweledGameState(size, size, BenchmarkBoards.SEED);
+            colors = BenchmarkBoards.randomColors(size, size, BenchmarkBoards.palette(paletteSize));
+            BenchmarkBoards.load(state.getGrid(), colors);
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            state.dispose();
+        }
+    }
+
+    /**
+     * A game that cycles through a pool of random boards, for the benchmarks
+     * that resolve matches.
+     */
+    @State(Scope.Thread)
+    public static class ResetGame extends Game {
+        Grid[] pool;
+        int next = 0;
+
+        @Setup(Level.Trial)
+        public void setUpPool() {
+            pool = BenchmarkBoards.randomPool(size, size, BenchmarkBoards.palette(paletteSize));
+        }
+
+        /**
+         * Copies the next board in the pool over the game's board.
+         */
+        void restoreBoard() {
+            state.getGrid().copyFrom(pool[next]);
+            next = (next + 1) % pool.length;
+        }
+    }
+
+    /**
+     * A game that generates its boards in a palette of the benchmark's size.
+     * Generation clears the board first, so calls need no setup between them.
+     */
+    @State(Scope.Thread)
+    public static class EmptyGame {
+        @Param({ "10", "64", "256", "1024" })
+        int size;
+
+        @Param({ "4", "8" })
+        int paletteSize;
+
+        BejeweledGameState state;
+
+        @Setup(Level.Trial)
+        public void setUpGame() {
+            state = new BejeweledGameState(size, size, BenchmarkBoards.SEED,
+                    Palette.ofSize(BenchmarkBoards.palette(paletteSize)));
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            state.dispose();
+        }
+    }
+
+    /**
+     * A generated game that cycles through copies of its board, each with a
+     * different fifth of its cells emptied.
+     */
+    @State(Scope.Thread)
+    public static class HoledGame {
+        @Param({ "10", "64", "256", "1024" })
+        int size;
+
+        @Param({ "4", "8" })
+        int paletteSize;
+
+        BejeweledGameState state;
+        Grid[] pool;
+        int next = 0;
+
+        @Setup(Level.Trial)
+        public void setUpGame() {
+            state = new BejeweledGameState(size, size, BenchmarkBoards.SEED,
+                    Palette.ofSize(BenchmarkBoards.palette(paletteSize)));
+            pool = BenchmarkBoards.holedPool(state.getGrid());
+        }
+
+        /**
+         * Copies the next board in the pool over the game's board.
+         */
+        void restoreBoard() {
+            state.getGrid().copyFrom(pool[next]);
+            next = (next + 1) % pool.length;
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            state.dispose();
+        }
+    }
+
+    @Benchmark
+    public boolean hasMatches(Game game) {
+        return game.state.hasMatches();
+    }
+
+    @Benchmark
+    public boolean checkForMatches(ResetGame game) {
+        game.restoreBoard();
+        return game.state.checkForMatches();
+    }
+
+    /**
+     * The cost of restoring the board that {@link #checkForMatches} includes.
+     */
+    @Benchmark
+    public Grid checkForMatchesRestore(ResetGame game) {
+        game.restoreBoard();
+        return game.state.getGrid();
+    }
+
+    @Benchmark
+    public Grid initializeGridWithoutMatches(EmptyGame game) {
+        game.state.initializeGridWithoutMatches();
+        return game.state.getGrid();
+    }
+
+    @Benchmark
+    public Grid fillEmptySpaces(HoledGame game) {
+        game.restoreBoard();
+        game.state.fillEmptySpaces();
+        return game.state.getGrid();
+    }
+
+    /**
+     * The cost of restoring the board that {@link #fillEmptySpaces} includes.
+     */
+    @Benchmark
+    public Grid fillEmptySpacesRestore(HoledGame game) {
+        game.restoreBoard();
+        return game.state.getGrid();
+    }
+}
@@ -0,0 +1,61 @@
+package tilematch;
+
+import java.util.BitSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the scalar and Vector API {@link RowMatcher}s on a full match scan
+ * of wide boards, run on one thread so only the row matcher differs. The
+ * vector runs need the game built with {@code mvn -Pvector install}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = { "--add-modules", "jdk.incubator.vector" })
+@State(Scope.Thread)
+public class RowMatcherBenchmark {
+    @Param({ "512", "1024", "2048" })
+    int size;
+
+    @Param({ "scalar", "vector" })
+    String matcher;
+
+    Grid grid;
+    ParallelMatchScanner scanner;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        RowMatcher rowMatcher = "scalar".equals(matcher) ? RowMatcher.scalar() : RowMatcher.preferred();
+        if (!rowMatcher.getName().equals(matcher)) {
+            throw new IllegalStateException("The " + matcher + " matcher is not available");
+        }
+        grid = new Grid(size, size);
+        BenchmarkBoards.load(grid, BenchmarkBoards.randomColors(size, size, BenchmarkBoards.palette(6)));
+        scanner = new ParallelMatchScanner(ForkJoinPool.commonPool(), Integer.MAX_VALUE, rowMatcher);
+    }
+
+    @Benchmark
+    public BitSet scan() {
+        return scanner.scan(grid);
+    }
+
+    @Benchmark
+    public boolean hasMatch() {
+        return scanner.hasMatch(grid);
+    }
+}
@@ -3,9 +3,6 @@ package tilematch;
 import java.awt.Color;
 import java.awt.Font;
 import java.awt.Graphics;
-import javax.swing.SwingUtilities;
-import javax.swing.Timer;
-import java.awt.event.ActionEvent;
 
 /**
  * BejeweledGameState implements a Bejeweled-style matching game.
@@ -15,9 +12,8 @@ import java.awt.event.ActionEvent;
 public class BejeweledGameState extends TileMatchingGameEnvironment {
     private static final int PLAYER_TIME_LIMIT = 20; // 20 seconds per player
     private static final int GLOBAL_TIME_LIMIT = 300; // 5 minutes in seconds
-    private int currentPlayerTime = PLAYER_TIME_LIMIT;
-    private int globalTime = GLOBAL_TIME_LIMIT;
-    private long lastTimeUpdate = System.currentTimeMillis();
+    private final GameTimer playerTimer;
+    private final GameTimer globalTimer;
     private boolean isTimerRunning = true;
     private boolean isGameOver = false;
 
@@ -30,8 +26,38 @@ public class BejeweledGameState extends TileMatchingGameEnvironment {
      * @param columns The number of columns in the grid
      */
     public BejeweledGameState(int rows, int columns) {
-        super(rows, columns);
+        this(rows, columns, newSeed());
+    }
+
+    /**
+     * Creates a new BejeweledGameState whose board is generated from the
+     * specified seed.
+     *
+     * @param rows    The number of rows in the grid
+     * @param columns The number of columns in the grid
+     * @param seed    The random seed
+     */
+    public BejeweledGameState(int rows, int columns, long seed) {
+        this(rows, columns, seed, Palette.STANDARD);
+    }
+
+    /**
+     * Creates a new BejeweledGameState whose board is generated from the
+     * specified seed in the specified palette.
+     *
+     * @param rows    The number of rows in the grid
+     * @param columns The number of columns in the grid
+     * @param seed    The random seed
+     * @param palette The palette the blocks are colored from
+     */
+    public BejeweledGameState(int rows, int columns, long seed, Palette palette) {
+        super(rows, columns, seed, palette);
         initializeGrid();
+        // Expiry is posted back to the game loop so the timer thread never touches game state
+        playerTimer = GameTimerService.shared().start(PLAYER_TIME_LIMIT * 1000L,
+                () -> postCommand(InputCommand.PLAYER_TIMEOUT));
+        globalTimer = GameTimerService.shared().start(GLOBAL_TIME_LIMIT * 1000L,
+                () -> postCommand(InputCommand.GLOBAL_TIMEOUT));
     }
 
     /**
@@ -45,6 +71,34 @@ public class BejeweledGameState extends TileMatchingGameEnvironment {
         selectedCol = grid.getColumns() / 2;
     }
 
+    @Override
+    public void handleCommand(int packed) {
+        if (isStaleTimeout(InputCommand.command(packed))) {
+            // The timer restarted after this expiry was posted, so it belongs to
+            // a turn that has already ended; it is dropped before it is recorded
+            return;
+        }
+        super.handleCommand(packed);
+    }
+
+    /**
+     * Checks if a timeout command was posted by a timer that has since been
+     * restarted. A replay's log only holds the timeouts that were handled, so
+     * none of them are stale.
+     */
+    private boolean isStaleTimeout(int command) {
+        if (isReplaying()) {
+            return false;
+        }
+        if (command == InputCommand.PLAYER_TIMEOUT) {
+            return !playerTimer.isExpired();
+        }
+        if (command == InputCommand.GLOBAL_TIMEOUT) {
+            return !globalTimer.isExpired();
+        }
+        return false;
+    }
+
     @Override
     public void handleInput(String input) {
         switch (input) {
@@ -76,15 +130,23 @@ public class BejeweledGameState extends TileMatchingGameEnvironment {
                 swapBlocks();
                 break;
             case "M":
-                // Save current stats before returning to menu
-                GameChooser.updatePlayerNames(players.get(0).getName(), players.get(1).getName());
-                GameChooser.updatePlayerWins(player1Wins, player2Wins);
-                // Close the current display
-                SwingUtilities.invokeLater(() -> {
-                    display.getFrame().dispose();
-                    // Launch game chooser in a new thread
-                    new Thread(() -> GameChooser.main(new String[0])).start();
-                });
+                returnToMenu();
+                break;
+            case "PLAYER_TIMEOUT":
+                if (isTimerRunning && !isGameOver) {
+                    // Time's up for current player
+                    switchPlayers();
+                    message2 = "Time's up! Switching players...";
+                }
+                break;
+            case "GLOBAL_TIMEOUT":
+                if (isTimerRunning && !isGameOver) {
+                    isGameOver = true;
+                    message = "Time's Up! Game Over!";
+                    message2 = "Player 1 Score: " + players.get(0).getScore() + " | Player 2 Score: "
+                            + players.get(1).getScore();
+                    stopTimers();
+                }
                 break;
         }
     }
@@ -97,8 +159,8 @@ public class BejeweledGameState extends TileMatchingGameEnvironment {
         grid.clear();
         initializeGrid();
         resetAllPlayers();
-        currentPlayerTime = PLAYER_TIME_LIMIT;
-        globalTime = GLOBAL_TIME_LIMIT;
+        playerTimer.restart();
+        globalTimer.restart();
         isTimerRunning = true;
         isGameOver = false;
         message = getCurrPlayerName() + "'s Turn!";
@@ -115,42 +177,60 @@ public class BejeweledGameState extends TileMatchingGameEnvironment {
 
     @Override
     protected void updateGame(double deltaTime) {
+        // Timers run on GameTimerService and post their expiry as commands
+    }
+
+    /**
+     * Pauses both the player and the global timer.
+     */
+    public void pauseTimers() {
+        playerTimer.pause();
+        globalTimer.pause();
+    }
+
+    /**
+     * Resumes both timers after {@link #pauseTimers()}.
+     */
+    public void resumeTimers() {
         if (isTimerRunning && !isGameOver) {
-            long currentTime = System.currentTimeMillis();
-            if (currentTime - lastTimeUpdate >= 1000) { // Update every second
-                currentPlayerTime--;
-                globalTime--;
-                lastTimeUpdate = currentTime;
-
-                // Check global timer
-                if (globalTime <= 0) {
-                    isGameOver = true;
-                    message = "Time's Up! Game Over!";
-                    message2 = "Player 1 Score: " + players.get(0).getScore() + " | Player 2 Score: "
-                            + players.get(1).getScore();
-                    isTimerRunning = false;
-                    return;
-                }
+            playerTimer.resume();
+            globalTimer.resume();
+        }
+    }
 
-                // Check player timer
-                if (currentPlayerTime <= 0) {
-                    // Time's up for current player
-                    switchPlayers();
-                    currentPlayerTime = PLAYER_TIME_LIMIT; // Reset timer for next player
-                    lastTimeUpdate = currentTime; // Reset the last update time
-                    message = getCurrPlayerName() + "'s Turn!";
-                    message2 = "Time's up! Switching players...";
-                }
-            }
+    private void stopTimers() {
+        isTimerRunning = false;
+        playerTimer.cancel();
+        globalTimer.cancel();
+    }
+
+    @Override
+    public void dispose() {
+        stopTimers();
+        super.dispose();
+    }
+
+    @Override
+    public GameType getGameType() {
+        return GameType.BEJEWELED;
+    }
+
+    @Override
+    public long getNextUpdateDelayMillis() {
+        if (!isTimerRunning || isGameOver || playerTimer.isPaused()) {
+            return -1;
         }
+        // Wake up in time to redraw the next whole second on the clock
+        return playerTimer.getRemainingMillis() % 1000 + 1;
     }
 
     @Override
     public void switchPlayers() {
         super.switchPlayers();
         // Reset timer for the new player
-        currentPlayerTime = PLAYER_TIME_LIMIT;
-        lastTimeUpdate = System.currentTimeMillis();
+        if (isTimerRunning) {
+            playerTimer.restart();
+        }
         message = getCurrPlayerName() + "'s Turn!";
     }
 
@@ -159,7 +239,7 @@ public class BejeweledGameState extends TileMatchingGameEnvironment {
         g.setColor(Color.WHITE);
         g.setFont(new Font("Arial", Font.BOLD, 16));
 
-        int textX = grid.getXOffset() + grid.getColumns() * grid.getCellSize() + 20;
+        int textX = grid.getXOffset() + grid.getScreenWidth() + 20;
         int textY = grid.getYOffset() + 30;
 
         g.drawString("Bejeweled", textX, textY);
@@ -174,6 +254,8 @@ public class BejeweledGameState extends TileMatchingGameEnvironment {
         g.drawString("Wins - " + players.get(0).getName() + ": " + player1Wins + " | " +
                 players.get(1).getName() + ": " + player2Wins, textX, textY + 150);
 
+        int currentPlayerTime = toDisplaySeconds(playerTimer);
+        int globalTime = toDisplaySeconds(globalTimer);
         g.drawString("Player Time: " + currentPlayerTime + "s", textX, textY + 180);
         g.drawString("Game Time: " + (globalTime / 60) + ":" + String.format("%02d", globalTime % 60), textX,
                 textY + 210);
@@ -185,6 +267,14 @@ public class BejeweledGameState extends TileMatchingGameEnvironment {
         g.drawString("M: Return to Menu", textX, textY + 320);
     }
 
+    /**
+     * Converts a timer's remaining time to whole seconds, rounding up so the
+     * clock shows 1s until the timer actually expires.
+     */
+    private static int toDisplaySeconds(GameTimer timer) {
+        return (int) ((timer.getRemainingMillis() + 999) / 1000);
+    }
+
     @Override
     protected boolean checkGameOver() {
         if ((!hasMatches() && playerOneFinished) || isGameOver) {
@@ -193,18 +283,19 @@ public class BejeweledGameState extends TileMatchingGameEnvironment {
 
             if (scoreP1 > scoreP2) {
                 message = players.get(0).getName() + " Wins!";
-                player1Wins++;
+                recordResult(0);
             } else if (scoreP2 > scoreP1) {
                 message = players.get(1).getName() + " Wins!";
-                player2Wins++;
+                recordResult(1);
             } else {
                 message = "It's a Tie!";
+                recordResult(-1);
             }
             message2 = players.get(0).getName() + " Score = " + scoreP1 + " | " +
                     players.get(1).getName() + " Score = " + scoreP2;
             // Reset game state after displaying final scores
             playerOneFinished = false;
-            isTimerRunning = false;
+            stopTimers();
             resetAllPlayers();
             clearGrid();
             return true;
@@ -1,6 +1,5 @@
 package tilematch;
 
-import java.awt.event.KeyAdapter;
 import java.awt.event.KeyEvent;
 import javax.swing.JOptionPane;
 
@@ -8,18 +7,38 @@ import javax.swing.JOptionPane;
  * A simple launcher for the Bejeweled game.
  */
 public class BejeweledLauncher extends GameLauncher {
-    protected static final int WINDOW_WIDTH = 800;
-    protected static final int WINDOW_HEIGHT = 600;
     private static final String WINDOW_TITLE = "Bejeweled";
 
+    /**
+     * Creates a new BejeweledLauncher with the shared config.
+     */
+    public BejeweledLauncher() {
+    }
+
+    /**
+     * Creates a new BejeweledLauncher.
+     *
+     * @param config The board size, palette, and window and cell sizes
+     */
+    public BejeweledLauncher(GameConfig config) {
+        super(config);
+    }
+
     /**
      * The main entry point for the application.
      *
-     * @param args The command line arguments
+     * @param args The command line arguments (see {@link GameConfig})
      */
     public static void main(String[] args) {
-        BejeweledLauncher launcher = new BejeweledLauncher();
-        launcher.run();
+        GameConfig config;
+        try {
+            config = GameConfig.fromArgs(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println("Usage: BejeweledLauncher " + GameConfig.USAGE);
+            return;
+        }
+        GameSessionManager.launch(new BejeweledLauncher(config));
     }
 
    
@@ -29,19 +48,19 @@ public class BejeweledLauncher extends GameLauncher {
         // Get player names from GameChooser
         String[] playerNames = getPlayerNames();
 
-        display = new Display(WINDOW_WIDTH, WINDOW_HEIGHT, WINDOW_TITLE);
-        gameState = new BejeweledGameState(10, 10);
+        display = new Display(config.getWindowWidth(), config.getWindowHeight(), WINDOW_TITLE);
+        gameState = config.createState(GameType.BEJEWELED);
         gameState.setDisplay(display);
 
         // Set player names
         String currPlayer = ((BejeweledGameState) gameState).setPlayerNames(playerNames[0], playerNames[1]);
+        PlayerStatsStore stats = PlayerStatsStore.shared();
+        gameState.setStatsStore(stats);
+        gameState.setLeaderboard(Leaderboard.shared(GameType.BEJEWELED));
+        gameState.setPlayerWins(stats.getStats(playerNames[0]).getWins(), stats.getStats(playerNames[1]).getWins());
         ((BejeweledGameState) gameState).setMessage(currPlayer + "'s Turn!");
-        display.addKeyListener(new KeyAdapter() {
-            @Override
-            public void keyPressed(KeyEvent e) {
-                handleKeyPress(e.getKeyCode());
-            }
-        });
+        ReplayRecorder.start(GameType.BEJEWELED, gameState);
+        display.addKeyListener(createKeyListener());
 
         running = true;
         lastUpdateTime = System.nanoTime();
@@ -51,25 +70,36 @@ public class BejeweledLauncher extends GameLauncher {
     protected void handleKeyPress(int keyCode) {
         switch (keyCode) {
             case KeyEvent.VK_UP:
-                gameState.handleInput("UP");
+                queueCommand(InputCommand.UP);
                 break;
             case KeyEvent.VK_DOWN:
-                gameState.handleInput("DOWN");
+                queueCommand(InputCommand.DOWN);
                 break;
             case KeyEvent.VK_LEFT:
-                gameState.handleInput("LEFT");
+                queueCommand(InputCommand.LEFT);
                 break;
             case KeyEvent.VK_RIGHT:
-                gameState.handleInput("RIGHT");
+                queueCommand(InputCommand.RIGHT);
                 break;
             case KeyEvent.VK_SPACE:
-                gameState.handleInput("SPACE");
+                queueCommand(InputCommand.SPACE);
                 break;
             case KeyEvent.VK_M:
-                gameState.handleInput("M");
+                queueCommand(InputCommand.MENU);
+                break;
+            case KeyEvent.VK_F3:
+                queueCommand(InputCommand.METRICS);
+                break;
+            case KeyEvent.VK_EQUALS:
+            case KeyEvent.VK_ADD:
+                queueCommand(InputCommand.ZOOM_IN);
+                break;
+            case KeyEvent.VK_MINUS:
+            case KeyEvent.VK_SUBTRACT:
+                queueCommand(InputCommand.ZOOM_OUT);
                 break;
             case KeyEvent.VK_ESCAPE:
-                running = false;
+                stop();
                 break;
         }
     }
@@ -6,68 +6,59 @@ import java.awt.Graphics;
 /**
  * The Block class represents a single block in the game.
  * It can be extended to create different types of blocks for different games.
+ *
+ * Blocks are immutable and shared: each {@link Palette} holds one instance per
+ * type and color, and a block's position is wherever the grid holds it.
+ * Moving a block is moving a reference, and filling the grid allocates
+ * nothing. A block stores its color as a palette id, so matching compares
+ * ints. Use {@link Grid#getPositionedBlock(int, int)} when a block's row and
+ * column are needed.
  */
 public class Block {
-    protected int row;
-    protected int column;
-    protected Color color;
-    protected BlockType type;
+    // How strongly the bevel lines tint the block's color, out of 255
+    private static final int BEVEL_ALPHA = 100;
 
-    /**
-     * Creates a new Block with the specified type and color.
-     *
-     * @param type  The type of the block
-     * @param color The color of the block
-     */
-    public Block(BlockType type, Color color) {
-        this.type = type;
-        this.color = color;
-        this.row = 0;
-        this.column = 0;
-    }
+    protected final BlockType type;
+    protected final Palette palette;
+    protected final int colorId;
+    // The bevel colors already blended with the block's color, so drawing them
+    // is an opaque fill rather than a slow, allocating translucent one
+    private final Color highlight;
+    private final Color shadow;
 
     /**
-     * Creates a new Block with the specified position, type, and color.
+     * Creates a new Block with the specified type and color. Use
+     * {@link Palette#block(BlockType, int)} to get a shared block instead.
      *
-     * @param row    The row position of the block
-     * @param column The column position of the block
-     * @param type   The type of the block
-     * @param color  The color of the block
+     * @param type    The type of the block
+     * @param palette The palette the color comes from
+     * @param colorId The id of the block's color in the palette
      */
-    public Block(int row, int column, BlockType type, Color color) {
-        this.row = row;
-        this.column = column;
+    public Block(BlockType type, Palette palette, int colorId) {
         this.type = type;
-        this.color = color;
+        this.palette = palette;
+        this.colorId = colorId;
+        Color color = palette.getColor(colorId);
+        this.highlight = blend(color, Color.WHITE);
+        this.shadow = blend(color, Color.BLACK);
     }
 
     /**
-     * Sets the position of the block.
+     * Gets the shared block with the specified type and a color from the
+     * standard palette.
      *
-     * @param row    The row position
-     * @param column The column position
-     */
-    public void setPosition(int row, int column) {
-        this.row = row;
-        this.column = column;
-    }
-
-    /**
-     * Gets the row position of the block.
-     *
-     * @return The row position
-     */
-    public int getRow() {
-        return row;
-    }
-
-    /**
-     * Gets the column position of the block.
-     *
-     * @return The column position
+     * @param type  The type of the block
+     * @param color The color of the block
+     * @return The block
+     * @throws IllegalArgumentException If the color is not in
+     *                                  {@link Palette#STANDARD}
      */
-    public int getColumn() {
-        return column;
+    public static Block of(BlockType type, Color color) {
+        int id = Palette.STANDARD.idOf(color);
+        if (id == Palette.EMPTY) {
+            throw new IllegalArgumentException(color + " is not in the standard palette");
+        }
+        return Palette.STANDARD.block(type, id);
     }
 
     /**
@@ -80,21 +71,21 @@ public class Block {
     }
 
     /**
-     * Gets the color of the block.
+     * Gets the id of the block's color in its palette.
      *
-     * @return The block color
+     * @return The color id, from 1 to the palette size
      */
-    public Color getColor() {
-        return color;
+    public int getColorId() {
+        return colorId;
     }
 
     /**
-     * Sets the color of the block.
+     * Gets the color of the block.
      *
-     * @param color The new color
+     * @return The block color
      */
-    public void setColor(Color color) {
-        this.color = color;
+    public Color getColor() {
+        return palette.getColor(colorId);
     }
 
     /**
@@ -107,7 +98,7 @@ public class Block {
      */
     public void render(Graphics g, int x, int y, int cellSize) {
         // Draw the block background
-        g.setColor(color);
+        g.setColor(getColor());
         g.fillRect(x + 1, y + 1, cellSize - 2, cellSize - 2);
 
         // Draw the block border
@@ -115,14 +106,48 @@ public class Block {
         g.drawRect(x + 1, y + 1, cellSize - 2, cellSize - 2);
 
         // Draw highlights
-        g.setColor(new Color(255, 255, 255, 100));
+        g.setColor(highlight);
         g.drawLine(x + 2, y + 2, x + cellSize - 3, y + 2);
         g.drawLine(x + 2, y + 2, x + 2, y + cellSize - 3);
 
         // Draw shadows
-        g.setColor(new Color(0, 0, 0, 100));
+        g.setColor(shadow);
         g.drawLine(x + cellSize - 3, y + 2, x + cellSize - 3, y + cellSize - 3);
         g.drawLine(x + 2, y + cellSize - 3, x + cellSize - 3, y + cellSize - 3);
+
+        // Mark special blocks with their effect
+        int inset = cellSize / 4;
+        int mid = cellSize / 2;
+        g.setColor(Color.WHITE);
+        switch (type) {
+            case BOMB:
+                g.setColor(Color.BLACK);
+                g.fillOval(x + inset, y + inset, cellSize - 2 * inset, cellSize - 2 * inset);
+                break;
+            case HORIZONTAL_CLEAR:
+                g.fillRect(x + 3, y + mid - 2, cellSize - 6, 4);
+                break;
+            case VERTICAL_CLEAR:
+                g.fillRect(x + mid - 2, y + 3, 4, cellSize - 6);
+                break;
+            case COLOR_BOMB:
+                g.fillOval(x + inset, y + inset, cellSize - 2 * inset, cellSize - 2 * inset);
+                g.setColor(Color.BLACK);
+                g.drawOval(x + inset, y + inset, cellSize - 2 * inset, cellSize - 2 * inset);
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * Gets the color a translucent bevel line leaves when drawn over a block.
+     */
+    private static Color blend(Color base, Color tint) {
+        return new Color(
+                (tint.getRed() * BEVEL_ALPHA + base.getRed() * (255 - BEVEL_ALPHA)) / 255,
+                (tint.getGreen() * BEVEL_ALPHA + base.getGreen() * (255 - BEVEL_ALPHA)) / 255,
+                (tint.getBlue() * BEVEL_ALPHA + base.getBlue() * (255 - BEVEL_ALPHA)) / 255);
     }
 
     /**
@@ -138,6 +163,62 @@ public class Block {
         return this.type == other.type;
     }
 
+    /**
+     * A block together with the grid position it was read from.
+     */
+    public static final class Positioned {
+        private final Block block;
+        private final int row;
+        private final int column;
+
+        /**
+         * Creates a new Positioned block.
+         *
+         * @param block  The block
+         * @param row    The row the block is at
+         * @param column The column the block is at
+         */
+        public Positioned(Block block, int row, int column) {
+            this.block = block;
+            this.row = row;
+            this.column = column;
+        }
+
+        public Block getBlock() {
+            return block;
+        }
+
+        /**
+         * Gets the row position of the block.
+         *
+         * @return The row position
+         */
+        public int getRow() {
+            return row;
+        }
+
+        /**
+         * Gets the column position of the block.
+         *
+         * @return The column position
+         */
+        public int getColumn() {
+            return column;
+        }
+
+        public BlockType getType() {
+            return block.getType();
+        }
+
+        public int getColorId() {
+            return block.getColorId();
+        }
+
+        public Color getColor() {
+            return block.getColor();
+        }
+    }
+
     /**
      * Enum representing different types of blocks.
      */
@@ -0,0 +1,145 @@
+package tilematch;
+
+/**
+ * The Camera class chooses which part of a grid is drawn and how large.
+ * The camera shows a window of whole cells that fits in its viewport at the
+ * current zoom, which is the size of a cell in pixels, and scrolls to keep
+ * the selection cursor in view. A grid with a camera only draws the cells in
+ * view (see {@link Grid#render(java.awt.Graphics)}), so drawing a frame costs
+ * time in proportion to the viewport rather than the board.
+ *
+ * A camera is used by the game loop thread only.
+ */
+public class Camera {
+    /**
+     * The cell sizes, in pixels, the camera zooms between.
+     */
+    public static final int[] ZOOM_LEVELS = { 4, 6, 8, 12, 16, 20, 24, 30, 40, 48, 64 };
+
+    private final int width;
+    private final int height;
+    private int cellSize;
+    private int firstRow = 0;
+    private int firstColumn = 0;
+
+    /**
+     * Creates a new Camera.
+     *
+     * @param width    The width of the viewport in pixels
+     * @param height   The height of the viewport in pixels
+     * @param cellSize The size of a cell in pixels
+     */
+    public Camera(int width, int height, int cellSize) {
+        this.width = width;
+        this.height = height;
+        this.cellSize = cellSize;
+    }
+
+    /**
+     * Gets the size of a cell at the current zoom.
+     *
+     * @return The cell size in pixels
+     */
+    public int getCellSize() {
+        return cellSize;
+    }
+
+    /**
+     * Gets the top row in view.
+     *
+     * @return The row
+     */
+    public int getFirstRow() {
+        return firstRow;
+    }
+
+    /**
+     * Gets the leftmost column in view.
+     *
+     * @return The column
+     */
+    public int getFirstColumn() {
+        return firstColumn;
+    }
+
+    /**
+     * Gets the number of rows in view.
+     *
+     * @param grid The grid being viewed
+     * @return The number of rows, at least 1 unless the grid has none
+     */
+    public int getVisibleRows(Grid grid) {
+        return Math.min(grid.getRows(), Math.max(1, height / cellSize));
+    }
+
+    /**
+     * Gets the number of columns in view.
+     *
+     * @param grid The grid being viewed
+     * @return The number of columns, at least 1 unless the grid has none
+     */
+    public int getVisibleColumns(Grid grid) {
+        return Math.min(grid.getColumns(), Math.max(1, width / cellSize));
+    }
+
+    /**
+     * Zooms in to the next larger cell size, keeping the cell in focus in
+     * view.
+     *
+     * @param grid The grid being viewed
+     * @param row  The row to keep in view
+     * @param col  The column to keep in view
+     */
+    public void zoomIn(Grid grid, int row, int col) {
+        for (int size : ZOOM_LEVELS) {
+            if (size > cellSize) {
+                cellSize = size;
+                break;
+            }
+        }
+        follow(grid, row, col);
+    }
+
+    /**
+     * Zooms out to the next smaller cell size, keeping the cell in focus in
+     * view.
+     *
+     * @param grid The grid being viewed
+     * @param row  The row to keep in view
+     * @param col  The column to keep in view
+     */
+    public void zoomOut(Grid grid, int row, int col) {
+        for (int i = ZOOM_LEVELS.length - 1; i >= 0; i--) {
+            if (ZOOM_LEVELS[i] < cellSize) {
+                cellSize = ZOOM_LEVELS[i];
+                break;
+            }
+        }
+        follow(grid, row, col);
+    }
+
+    /**
+     * Scrolls as little as possible to bring a cell into view, with a cell of
+     * margin on each side where the view is large enough.
+     *
+     * @param grid The grid being viewed
+     * @param row  The row to bring into view
+     * @param col  The column to bring into view
+     */
+    public void follow(Grid grid, int row, int col) {
+        firstRow = scrollTo(firstRow, row, getVisibleRows(grid), grid.getRows());
+        firstColumn = scrollTo(firstColumn, col, getVisibleColumns(grid), grid.getColumns());
+    }
+
+    private static int scrollTo(int first, int target, int visible, int total) {
+        int margin = Math.min(1, (visible - 1) / 2);
+        if (target >= 0) {
+            if (target < first + margin) {
+                first = target - margin;
+            } else if (target > first + visible - 1 - margin) {
+                first = target - visible + 1 + margin;
+            }
+        }
+        return Math.max(0, Math.min(first, total - visible));
+    }
+}
@@ -11,6 +11,7 @@ import java.awt.event.KeyListener;
 public class Display {
     private JFrame frame;
     private GamePanel gamePanel;
+    private FrameBuffer frameBuffer;
     private int width;
     private int height;
     private String title;
@@ -39,6 +40,7 @@ public class Display {
         frame.setResizable(false);
         frame.setLocationRelativeTo(null);
 
+        frameBuffer = new FrameBuffer(width, height);
         gamePanel = new GamePanel(width, height);
         frame.add(gamePanel);
         frame.setVisible(true);
@@ -48,12 +50,25 @@ public class Display {
     }
 
     /**
-     * Updates the display with the current game state.
+     * Updates the display with the current game state. The state is drawn on
+     * the calling thread into an offscreen frame, which is then handed to the
+     * event dispatch thread for painting, so the game state is never read while
+     * the game loop is changing it.
      *
      * @param gameState The current state of the game
      */
     public void render(GameState gameState) {
-        gamePanel.setGameState(gameState);
+        Graphics2D g = frameBuffer.beginFrame();
+        try {
+            // Fill the background
+            g.setColor(Color.BLACK);
+            g.fillRect(0, 0, width, height);
+
+            gameState.render(g);
+        } finally {
+            g.dispose();
+        }
+        frameBuffer.publish();
         gamePanel.repaint();
     }
 
@@ -77,28 +92,18 @@ public class Display {
      * Inner class that extends JPanel to render the game.
      */
     private class GamePanel extends JPanel {
-        private GameState gameState;
 
         public GamePanel(int width, int height) {
             setPreferredSize(new Dimension(width, height));
             setBackground(Color.BLACK);
         }
 
-        public void setGameState(GameState gameState) {
-            this.gameState = gameState;
-        }
-
         @Override
         protected void paintComponent(Graphics g) {
             super.paintComponent(g);
 
-            // Fill the background
-            g.setColor(Color.BLACK);
-            g.fillRect(0, 0, getWidth(), getHeight());
-
-            if (gameState != null) {
-                gameState.render(g);
-            }
+            // Draw the newest finished frame
+            g.drawImage(frameBuffer.latestFrame(), 0, 0, null);
         }
     }
 }
\ No newline at end of file
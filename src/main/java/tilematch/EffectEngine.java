@@ -0,0 +1,160 @@
+package tilematch;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * The EffectEngine class creates and resolves special blocks.
+ * A match of four in a line becomes a line-clear block, lying the way the
+ * line does; a match with a run of five or more becomes a COLOR_BOMB, and any
+ * other match of five or more, where runs cross, becomes a BOMB. When a
+ * special block is cleared it triggers: a BOMB clears the 3x3 square around
+ * it, a HORIZONTAL_CLEAR its row, a VERTICAL_CLEAR its column, and a
+ * COLOR_BOMB every block of its color. SPECIAL blocks have no effect.
+ *
+ * Cells are bits in a mask, indexed row * columns + column. Resolving works
+ * through a queue of triggered cells: each effect visits the cells it reaches,
+ * sets each one that is not already cleared, and queues it if it holds a
+ * special block. Only a BOMB's square, a line or a color's cells are visited,
+ * and a color is swept at most once per resolve, since a second COLOR_BOMB of
+ * that color finds all of it cleared. A whole chain reaction costs time in
+ * proportion to the cells its effects reach rather than a board scan per link.
+ *
+ * An engine is used by one game and is not thread-safe.
+ */
+public class EffectEngine {
+    private final int rows;
+    private final int columns;
+    private final boolean[] colorSwept; // Indexed by color id, during a resolve
+    private int[] queue;
+    private int tail; // Cells queued so far in the current resolve
+
+    /**
+     * Creates a new EffectEngine for boards of the specified size.
+     *
+     * @param rows    The number of rows
+     * @param columns The number of columns
+     * @param palette The palette the board's colors come from
+     */
+    public EffectEngine(int rows, int columns, Palette palette) {
+        this.rows = rows;
+        this.columns = columns;
+        this.colorSwept = new boolean[palette.size() + 1];
+        this.queue = new int[16];
+    }
+
+    /**
+     * Chooses the special block a match creates.
+     *
+     * @param size              The number of blocks in the match
+     * @param longestHorizontal The length of the match's longest horizontal run
+     * @param longestVertical   The length of the match's longest vertical run
+     * @return The special block type, or STANDARD if the match is too small
+     */
+    public static Block.BlockType specialFor(int size, int longestHorizontal, int longestVertical) {
+        if (size >= 5) {
+            return Math.max(longestHorizontal, longestVertical) >= 5
+                    ? Block.BlockType.COLOR_BOMB : Block.BlockType.BOMB;
+        }
+        if (size == 4) {
+            return longestHorizontal >= longestVertical
+                    ? Block.BlockType.HORIZONTAL_CLEAR : Block.BlockType.VERTICAL_CLEAR;
+        }
+        return Block.BlockType.STANDARD;
+    }
+
+    /**
+     * Expands a set of cleared cells with the effects of every special block
+     * it contains, and of every special block those effects reach.
+     *
+     * @param grid    The board; it is not changed
+     * @param cleared The cells being cleared; effects are added to it
+     * @return The number of effects triggered
+     */
+    public int resolve(Grid grid, BitSet cleared) {
+        tail = 0;
+        for (int cell = cleared.nextSetBit(0); cell >= 0; cell = cleared.nextSetBit(cell + 1)) {
+            if (isSpecial(grid, cell)) {
+                enqueue(cell);
+            }
+        }
+        if (tail == 0) {
+            return 0;
+        }
+
+        for (int head = 0; head < tail; head++) {
+            trigger(grid, cleared, queue[head]);
+        }
+        Arrays.fill(colorSwept, false);
+        return tail;
+    }
+
+    /**
+     * Clears the cells a special block's effect reaches.
+     */
+    private void trigger(Grid grid, BitSet cleared, int cell) {
+        int row = cell / columns;
+        int col = cell % columns;
+        switch (grid.getBlock(row, col).getType()) {
+            case BOMB:
+                for (int r = Math.max(0, row - 1); r <= Math.min(rows - 1, row + 1); r++) {
+                    for (int c = Math.max(0, col - 1); c <= Math.min(columns - 1, col + 1); c++) {
+                        hit(grid, cleared, r * columns + c);
+                    }
+                }
+                break;
+            case HORIZONTAL_CLEAR:
+                for (int c = 0; c < columns; c++) {
+                    hit(grid, cleared, row * columns + c);
+                }
+                break;
+            case VERTICAL_CLEAR:
+                for (int r = 0; r < rows; r++) {
+                    hit(grid, cleared, r * columns + col);
+                }
+                break;
+            case COLOR_BOMB:
+                int colorId = grid.getColorId(row, col);
+                if (!colorSwept[colorId]) {
+                    colorSwept[colorId] = true;
+                    for (int r = 0; r < rows; r++) {
+                        byte[] ids = grid.colorRow(r);
+                        for (int c = 0; c < columns; c++) {
+                            if (ids[c] == (byte) colorId) {
+                                hit(grid, cleared, r * columns + c);
+                            }
+                        }
+                    }
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * Clears a cell an effect reaches, queueing it if it newly sets off a
+     * special block.
+     */
+    private void hit(Grid grid, BitSet cleared, int cell) {
+        if (!cleared.get(cell)) {
+            cleared.set(cell);
+            if (isSpecial(grid, cell)) {
+                enqueue(cell);
+            }
+        }
+    }
+
+    private boolean isSpecial(Grid grid, int cell) {
+        Block block = grid.getBlock(cell / columns, cell % columns);
+        return block != null && block.getType() != Block.BlockType.STANDARD
+                && block.getType() != Block.BlockType.SPECIAL;
+    }
+
+    private void enqueue(int cell) {
+        if (tail == queue.length) {
+            queue = Arrays.copyOf(queue, tail * 2);
+        }
+        queue[tail++] = cell;
+    }
+}
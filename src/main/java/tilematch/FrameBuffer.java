@@ -0,0 +1,66 @@
+package tilematch;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The FrameBuffer class hands finished frames from the game loop to the Swing
+ * event dispatch thread without locking.
+ * It keeps three images: a back frame owned by the game loop, a front frame
+ * owned by the painter, and a published frame in between. The game loop
+ * publishes a frame with a single atomic exchange and the painter picks up the
+ * newest one the same way, so neither thread ever waits for the other and a
+ * frame is never drawn while it is still being rendered.
+ */
+public class FrameBuffer {
+    private static final int INDEX_MASK = 0b011;
+    private static final int FRESH = 0b100; // Set when the published frame has not been picked up yet
+
+    private final BufferedImage[] frames = new BufferedImage[3];
+    private final AtomicInteger published = new AtomicInteger(1);
+    private int back = 0; // Only touched by the game loop
+    private int front = 2; // Only touched by the painter
+
+    /**
+     * Creates a new FrameBuffer with frames of the specified size.
+     *
+     * @param width  The width of each frame in pixels
+     * @param height The height of each frame in pixels
+     */
+    public FrameBuffer(int width, int height) {
+        for (int i = 0; i < frames.length; i++) {
+            frames[i] = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        }
+    }
+
+    /**
+     * Starts drawing a new frame. Must only be called from the game loop.
+     *
+     * @return A graphics context for the back frame; the caller must dispose it
+     */
+    public Graphics2D beginFrame() {
+        return frames[back].createGraphics();
+    }
+
+    /**
+     * Publishes the frame drawn since {@link #beginFrame()} and takes the
+     * previously published frame as the new back frame. Must only be called
+     * from the game loop.
+     */
+    public void publish() {
+        back = published.getAndSet(back | FRESH) & INDEX_MASK;
+    }
+
+    /**
+     * Gets the newest published frame. Must only be called from the painter.
+     *
+     * @return The frame to draw
+     */
+    public BufferedImage latestFrame() {
+        if ((published.get() & FRESH) != 0) {
+            front = published.getAndSet(front) & INDEX_MASK;
+        }
+        return frames[front];
+    }
+}
@@ -0,0 +1,84 @@
+package tilematch;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics;
+
+/**
+ * The FrameMetrics class collects timing histograms for one game session:
+ * how long each update, frame render and cascade takes, and how long a key
+ * press takes to reach the screen. Recording is always on and allocation
+ * free; the figures are only formatted when the overlay is shown.
+ */
+public class FrameMetrics {
+    private final LatencyHistogram update = new LatencyHistogram("Update");
+    private final LatencyHistogram render = new LatencyHistogram("Render");
+    private final LatencyHistogram cascade = new LatencyHistogram("Cascade");
+    private final LatencyHistogram inputLatency = new LatencyHistogram("Key to frame");
+    private final LatencyHistogram[] all = { update, render, cascade, inputLatency };
+    private volatile boolean visible = false;
+
+    public LatencyHistogram getUpdate() {
+        return update;
+    }
+
+    public LatencyHistogram getRender() {
+        return render;
+    }
+
+    public LatencyHistogram getCascade() {
+        return cascade;
+    }
+
+    public LatencyHistogram getInputLatency() {
+        return inputLatency;
+    }
+
+    /**
+     * Shows or hides the overlay.
+     */
+    public void toggleVisible() {
+        visible = !visible;
+    }
+
+    public boolean isVisible() {
+        return visible;
+    }
+
+    /**
+     * Clears every histogram.
+     */
+    public void reset() {
+        for (LatencyHistogram histogram : all) {
+            histogram.reset();
+        }
+    }
+
+    /**
+     * Draws the p50, p99 and maximum of each histogram.
+     *
+     * @param g The graphics context to render to
+     * @param x The left edge of the overlay
+     * @param y The top edge of the overlay
+     */
+    public void renderOverlay(Graphics g, int x, int y) {
+        int lineHeight = 16;
+        g.setColor(new Color(0, 0, 0, 180));
+        g.fillRect(x, y, 330, lineHeight * (all.length + 1) + 8);
+
+        g.setFont(new Font("Monospaced", Font.PLAIN, 12));
+        g.setColor(Color.GREEN);
+        int textY = y + lineHeight;
+        g.drawString(String.format("%-12s %7s %7s %7s %6s", "ms", "p50", "p99", "max", "n"), x + 6, textY);
+        for (LatencyHistogram histogram : all) {
+            textY += lineHeight;
+            g.drawString(String.format("%-12s %7.2f %7.2f %7.2f %6d", histogram.getName(),
+                    toMillis(histogram.getPercentile(50)), toMillis(histogram.getPercentile(99)),
+                    toMillis(histogram.getMax()), histogram.getCount()), x + 6, textY);
+        }
+    }
+
+    private static double toMillis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+}
@@ -13,8 +13,7 @@ public class GameChooser {
     private int selectedIndex = 0;
     private static String player1Name = null;
     private static String player2Name = null;
-    private static int player1Wins = 0;
-    private static int player2Wins = 0;
+    private final PlayerStatsStore stats = PlayerStatsStore.shared();
 
     public GameChooser() {
         // Check if we need to get player names
@@ -90,14 +89,12 @@ public class GameChooser {
         // close window
         frame.dispose();
 
-        // run game on new thread (so it won't block the swing edt)
-        new Thread(() -> {
-            if (options[selectedIndex].equals("Bejeweled")) {
-                BejeweledLauncher.main(new String[0]);
-            } else if (options[selectedIndex].equals("SameGame")) {
-                SameGameLauncher.main(new String[0]);
-            }
-        }).start();
+        // run game on the shared loop thread (so it won't block the swing edt)
+        if (options[selectedIndex].equals("Bejeweled")) {
+            GameSessionManager.launch(new BejeweledLauncher());
+        } else if (options[selectedIndex].equals("SameGame")) {
+            GameSessionManager.launch(new SameGameLauncher());
+        }
     }
 
     // menu panel
@@ -146,10 +143,10 @@ public class GameChooser {
             g.fillRect(0, 220, getWidth(), 40);
             g.setFont(new Font("Arial", Font.BOLD, 14));
             g.setColor(Color.CYAN);
-            String stats = player1Name + ": " + player1Wins + " wins | " +
-                    player2Name + ": " + player2Wins + " wins";
-            int statsWidth = g.getFontMetrics().stringWidth(stats);
-            g.drawString(stats, (getWidth() - statsWidth) / 2, 245);
+            String statsLine = player1Name + ": " + stats.getStats(player1Name).getWins() + " wins | " +
+                    player2Name + ": " + stats.getStats(player2Name).getWins() + " wins";
+            int statsWidth = g.getFontMetrics().stringWidth(statsLine);
+            g.drawString(statsLine, (getWidth() - statsWidth) / 2, 245);
 
             // draw controls in a box
             g.setColor(new Color(0, 0, 0, 150));
@@ -172,25 +169,24 @@ public class GameChooser {
 
     // main entry point
     public static void main(String[] args) {
+        // The board size and palette given here apply to every game chosen
+        try {
+            GameConfig.setShared(GameConfig.fromArgs(args));
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println("Usage: GameChooser " + GameConfig.USAGE);
+            return;
+        }
         SwingUtilities.invokeLater(GameChooser::new);
     }
 
-    // Static methods to update player stats
+    // Wins are kept in PlayerStatsStore; only the names of this run's players live here
     public static void updatePlayerNames(String p1Name, String p2Name) {
         player1Name = p1Name;
         player2Name = p2Name;
     }
 
-    public static void updatePlayerWins(int p1Wins, int p2Wins) {
-        player1Wins = p1Wins;
-        player2Wins = p2Wins;
-    }
-
     public static String[] getPlayerNames() {
         return new String[] { player1Name, player2Name };
     }
-
-    public static int[] getPlayerWins() {
-        return new int[] { player1Wins, player2Wins };
-    }
 }
@@ -0,0 +1,432 @@
+package tilematch;
+
+import java.awt.GraphicsEnvironment;
+import java.awt.HeadlessException;
+import java.awt.Rectangle;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Properties;
+
+/**
+ * The GameConfig class holds the settings a game is launched with: the size
+ * of the board, how many colors its blocks come in, the size of a cell and
+ * the size of the window. Settings are read from a properties file, by
+ * default {@value #FILE_NAME} in the working directory, and then from the
+ * command line, which wins:
+ *
+ * <pre>
+ * --rows n --columns n --palette n --cell-size px --width px --height px
+ * [--config file]
+ * </pre>
+ *
+ * The file uses the same names without the dashes, such as
+ * {@code cell-size=24}.
+ *
+ * The cell size and window size are worked out from the board unless they
+ * are given. The cell size is the largest camera zoom level, up to
+ * {@value #DEFAULT_CELL_SIZE} pixels, at which the whole board fits on the
+ * screen; a board too large to fit at {@value #MIN_FIT_CELL_SIZE} pixels
+ * scrolls instead (see {@link Camera}). The window is then made large enough
+ * for the board and the side panel, and never smaller than the original
+ * 800x600.
+ */
+public class GameConfig {
+    public static final String FILE_NAME = "tilematch.properties";
+    public static final int DEFAULT_ROWS = 10;
+    public static final int DEFAULT_COLUMNS = 10;
+    /**
+     * The largest cell size chosen automatically, in pixels.
+     */
+    public static final int DEFAULT_CELL_SIZE = 30;
+    /**
+     * The smallest cell size chosen automatically, in pixels; larger boards
+     * scroll.
+     */
+    public static final int MIN_FIT_CELL_SIZE = 8;
+    public static final int MIN_WINDOW_WIDTH = 800;
+    public static final int MIN_WINDOW_HEIGHT = 600;
+    public static final int MAX_BOARD_SIZE = 0xFFFF; // Replay logs store the size in 16 bits
+    /**
+     * The most cells a board may have. Cells are indexed row * columns +
+     * column in ints, and the match engine keeps several ints per cell.
+     */
+    public static final int MAX_CELLS = Integer.MAX_VALUE / 8;
+    public static final String USAGE = "[--config file] [--rows n] [--columns n] [--palette n]"
+            + " [--cell-size px] [--width px] [--height px]";
+    // Space the window needs beside and below the grid: the grid's offset, the
+    // side panel's text and the metrics overlay
+    private static final int PANEL_WIDTH = 300;
+    private static final int PANEL_HEIGHT = 180;
+
+    private static GameConfig shared;
+
+    private int rows = DEFAULT_ROWS;
+    private int columns = DEFAULT_COLUMNS;
+    private int paletteSize = Palette.STANDARD.size();
+    private int cellSize = 0; // 0 to fit the board
+    private int windowWidth = 0; // 0 to fit the board
+    private int windowHeight = 0;
+
+    /**
+     * Creates a new GameConfig with the default settings: a 10x10 board in
+     * the standard palette, fitted to the screen.
+     */
+    public GameConfig() {
+    }
+
+    /**
+     * Gets the config used by launchers that are not given one. It is read
+     * from {@value #FILE_NAME} in the working directory the first time it is
+     * needed, unless {@link #setShared(GameConfig)} was called first.
+     *
+     * @return The shared config
+     */
+    public static synchronized GameConfig shared() {
+        if (shared == null) {
+            shared = new GameConfig();
+            Path file = Paths.get(FILE_NAME);
+            if (Files.isRegularFile(file)) {
+                try {
+                    shared.load(file);
+                } catch (IOException | IllegalArgumentException e) {
+                    e.printStackTrace();
+                    shared = new GameConfig();
+                }
+            }
+        }
+        return shared;
+    }
+
+    /**
+     * Sets the config used by launchers that are not given one.
+     *
+     * @param config The config
+     */
+    public static synchronized void setShared(GameConfig config) {
+        shared = config;
+    }
+
+    /**
+     * Reads a config from command line arguments, on top of the properties
+     * file named by {@code --config}, or {@value #FILE_NAME} if there is one.
+     *
+     * @param args The command line arguments
+     * @return The config
+     * @throws IllegalArgumentException If an option is unknown, a value is
+     *                                  out of range or the file named by
+     *                                  {@code --config} cannot be read
+     */
+    public static GameConfig fromArgs(String... args) {
+        Path file = Paths.get(FILE_NAME);
+        boolean named = false;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            if (args[i].equals("--config")) {
+                file = Paths.get(args[i + 1]);
+                named = true;
+            }
+        }
+        GameConfig config = new GameConfig();
+        if (named || Files.isRegularFile(file)) {
+            try {
+                config.load(file);
+            } catch (IOException e) {
+                throw new IllegalArgumentException("Cannot read " + file + ": " + e.getMessage(), e);
+            }
+        }
+        for (int i = 0; i < args.length; i += 2) {
+            if (!args[i].startsWith("--")) {
+                throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+            if (i + 1 >= args.length) {
+                throw new IllegalArgumentException("Missing value for " + args[i]);
+            }
+            if (!args[i].equals("--config")) {
+                config.set(args[i].substring(2), args[i + 1]);
+            }
+        }
+        return config;
+    }
+
+    /**
+     * Reads settings from a properties file. Settings the file leaves out keep
+     * their current values.
+     *
+     * @param file The properties file
+     * @throws IOException              If the file cannot be read
+     * @throws IllegalArgumentException If a setting is unknown or out of range
+     */
+    public void load(Path file) throws IOException {
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(file)) {
+            properties.load(reader);
+        }
+        for (String name : properties.stringPropertyNames()) {
+            set(name, properties.getProperty(name).trim());
+        }
+    }
+
+    /**
+     * Changes one setting by name.
+     *
+     * @param name  The setting: rows, columns, palette, cell-size, width or
+     *              height
+     * @param value The value, in cells, colors or pixels
+     * @throws IllegalArgumentException If the setting is unknown or the value
+     *                                  is out of range
+     */
+    public void set(String name, String value) {
+        switch (name) {
+            case "rows":
+                setRows(parse(name, value));
+                break;
+            case "columns":
+                setColumns(parse(name, value));
+                break;
+            case "palette":
+                setPaletteSize(parse(name, value));
+                break;
+            case "cell-size":
+                setCellSize(parse(name, value));
+                break;
+            case "width":
+                setWindowSize(parse(name, value), windowHeight);
+                break;
+            case "height":
+                setWindowSize(windowWidth, parse(name, value));
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown setting " + name);
+        }
+    }
+
+    private static int parse(String name, String value) {
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("The " + name + " setting must be a whole number, not " + value);
+        }
+    }
+
+    /**
+     * Gets the number of rows on the board.
+     *
+     * @return The number of rows
+     */
+    public int getRows() {
+        return rows;
+    }
+
+    /**
+     * Sets the number of rows on the board.
+     *
+     * @param rows The number of rows, from 1 to {@value #MAX_BOARD_SIZE}
+     * @throws IllegalArgumentException If the number is out of range, or the
+     *                                  board would have more than
+     *                                  {@value #MAX_CELLS} cells
+     */
+    public void setRows(int rows) {
+        checkRange("rows", rows, 1, MAX_BOARD_SIZE);
+        checkCells(rows, columns);
+        this.rows = rows;
+    }
+
+    /**
+     * Gets the number of columns on the board.
+     *
+     * @return The number of columns
+     */
+    public int getColumns() {
+        return columns;
+    }
+
+    /**
+     * Sets the number of columns on the board.
+     *
+     * @param columns The number of columns, from 1 to {@value #MAX_BOARD_SIZE}
+     * @throws IllegalArgumentException If the number is out of range, or the
+     *                                  board would have more than
+     *                                  {@value #MAX_CELLS} cells
+     */
+    public void setColumns(int columns) {
+        checkRange("columns", columns, 1, MAX_BOARD_SIZE);
+        checkCells(rows, columns);
+        this.columns = columns;
+    }
+
+    /**
+     * Gets the palette the board's blocks are colored from.
+     *
+     * @return The palette (see {@link Palette#ofSize(int)})
+     */
+    public Palette getPalette() {
+        return Palette.ofSize(paletteSize);
+    }
+
+    /**
+     * Sets the number of block colors. Fewer colors make matches more common.
+     *
+     * @param paletteSize The number of colors, from 3 to
+     *                    {@value Palette#MAX_COLORS}
+     * @throws IllegalArgumentException If the number is out of range
+     */
+    public void setPaletteSize(int paletteSize) {
+        // With fewer than three colors a Bejeweled board cannot avoid matches
+        checkRange("palette", paletteSize, 3, Palette.MAX_COLORS);
+        this.paletteSize = paletteSize;
+    }
+
+    /**
+     * Sets the size of a cell, or 0 to fit the board to the screen.
+     *
+     * @param cellSize The cell size in pixels, from 3 to 64, or 0
+     * @throws IllegalArgumentException If the size is out of range
+     */
+    public void setCellSize(int cellSize) {
+        if (cellSize != 0) {
+            checkRange("cell-size", cellSize, 3, Camera.ZOOM_LEVELS[Camera.ZOOM_LEVELS.length - 1]);
+        }
+        this.cellSize = cellSize;
+    }
+
+    /**
+     * Sets the size of the window, or 0 in either dimension to fit that
+     * dimension to the board.
+     *
+     * @param width  The width in pixels, at least 400, or 0
+     * @param height The height in pixels, at least 300, or 0
+     * @throws IllegalArgumentException If a size is out of range
+     */
+    public void setWindowSize(int width, int height) {
+        if (width != 0) {
+            checkRange("width", width, 400, Short.MAX_VALUE);
+        }
+        if (height != 0) {
+            checkRange("height", height, 300, Short.MAX_VALUE);
+        }
+        this.windowWidth = width;
+        this.windowHeight = height;
+    }
+
+    private static void checkRange(String name, int value, int min, int max) {
+        if (value < min || value > max) {
+            throw new IllegalArgumentException("The " + name + " setting must be from " + min + " to " + max
+                    + ", not " + value);
+        }
+    }
+
+    private static void checkCells(int rows, int columns) {
+        if ((long) rows * columns > MAX_CELLS) {
+            throw new IllegalArgumentException("A board of " + rows + "x" + columns + " has more than "
+                    + MAX_CELLS + " cells");
+        }
+    }
+
+    /**
+     * Creates the game state for this config's board and palette.
+     *
+     * @param gameType The game to create
+     * @return The new game state
+     */
+    public GameState createState(GameType gameType) {
+        return gameType.createState(rows, columns, GameState.newSeed(), getPalette());
+    }
+
+    /**
+     * Gets the size of a cell on this config's board.
+     *
+     * @return The cell size in pixels
+     */
+    public int getCellSize() {
+        return getCellSize(rows, columns);
+    }
+
+    /**
+     * Gets the width of the window for this config's board.
+     *
+     * @return The width in pixels
+     */
+    public int getWindowWidth() {
+        return windowWidth != 0 ? windowWidth
+                : Math.max(MIN_WINDOW_WIDTH, getViewWidth(columns, getCellSize()) + PANEL_WIDTH);
+    }
+
+    /**
+     * Gets the height of the window for this config's board.
+     *
+     * @return The height in pixels
+     */
+    public int getWindowHeight() {
+        return windowHeight != 0 ? windowHeight
+                : Math.max(MIN_WINDOW_HEIGHT, getViewHeight(rows, getCellSize()) + PANEL_HEIGHT);
+    }
+
+    /**
+     * Creates the camera a grid is drawn through, sized to show as much of
+     * the grid as fits in the window.
+     *
+     * @param grid The grid; it need not be the size of this config's board
+     * @return The camera
+     */
+    public Camera createCamera(Grid grid) {
+        int size = getCellSize(grid.getRows(), grid.getColumns());
+        return new Camera(getViewWidth(grid.getColumns(), size), getViewHeight(grid.getRows(), size), size);
+    }
+
+    private int getCellSize(int rows, int columns) {
+        if (cellSize != 0) {
+            return cellSize;
+        }
+        int fit = Math.min(getMaxViewWidth() / columns, getMaxViewHeight() / rows);
+        int size = MIN_FIT_CELL_SIZE;
+        for (int level : Camera.ZOOM_LEVELS) {
+            if (level <= fit && level <= DEFAULT_CELL_SIZE) {
+                size = Math.max(size, level);
+            }
+        }
+        return size;
+    }
+
+    private int getViewWidth(int columns, int cellSize) {
+        return Math.max(cellSize, Math.min(columns * cellSize, getMaxViewWidth()));
+    }
+
+    private int getViewHeight(int rows, int cellSize) {
+        return Math.max(cellSize, Math.min(rows * cellSize, getMaxViewHeight()));
+    }
+
+    private int getMaxViewWidth() {
+        return (windowWidth != 0 ? windowWidth : getScreenBounds().width) - PANEL_WIDTH;
+    }
+
+    private int getMaxViewHeight() {
+        return (windowHeight != 0 ? windowHeight : getScreenBounds().height) - PANEL_HEIGHT;
+    }
+
+    /**
+     * Gets the part of the screen a window can use, or the original window
+     * size when there is no screen.
+     */
+    private static Rectangle getScreenBounds() {
+        if (!GraphicsEnvironment.isHeadless()) {
+            try {
+                Rectangle bounds = GraphicsEnvironment.getLocalGraphicsEnvironment().getMaximumWindowBounds();
+                return new Rectangle(Math.max(bounds.width, MIN_WINDOW_WIDTH),
+                        Math.max(bounds.height, MIN_WINDOW_HEIGHT));
+            } catch (HeadlessException e) {
+                // Fall through to the original size
+            }
+        }
+        return new Rectangle(MIN_WINDOW_WIDTH, MIN_WINDOW_HEIGHT);
+    }
+
+    @Override
+    public String toString() {
+        return rows + "x" + columns + " board, " + paletteSize + " colors, "
+                + (cellSize != 0 ? cellSize + "px cells" : "fitted cells") + ", "
+                + (windowWidth != 0 || windowHeight != 0 ? windowWidth + "x" + windowHeight + " window"
+                        : "fitted window");
+    }
+}
@@ -0,0 +1,184 @@
+package tilematch;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * The GameEvents class holds the Java Flight Recorder events emitted by the
+ * game engine.
+ * A frame hitch can be traced to the update, render, cascade level, gravity
+ * pass or refill that caused it, and lined up with GC and other JVM events
+ * in the same recording. The events record no stack traces, and while no
+ * recording is running an event costs no more than a check of its enabled
+ * flag, so they can be left on for continuous recording, e.g.
+ * {@code -XX:StartFlightRecording=maxage=10m}.
+ */
+public final class GameEvents {
+    private static final String CATEGORY = "Tile Match";
+
+    private GameEvents() {
+    }
+
+    @Name("tilematch.FrameUpdate")
+    @Label("Frame Update")
+    @Description("Input handling and game state update for one frame")
+    @Category({ CATEGORY, "Game Loop" })
+    @StackTrace(false)
+    public static final class FrameUpdate extends Event {
+        @Label("Rows")
+        int rows;
+
+        @Label("Columns")
+        int columns;
+    }
+
+    @Name("tilematch.FrameRender")
+    @Label("Frame Render")
+    @Description("Drawing one frame into the offscreen buffer")
+    @Category({ CATEGORY, "Game Loop" })
+    @StackTrace(false)
+    public static final class FrameRender extends Event {
+        @Label("Rows")
+        int rows;
+
+        @Label("Columns")
+        int columns;
+    }
+
+    @Name("tilematch.SwapValidation")
+    @Label("Swap Validation")
+    @Description("Checking a swap of two blocks, including the cascade it sets off or swapping back")
+    @Category({ CATEGORY, "Match Engine" })
+    @StackTrace(false)
+    public static final class SwapValidation extends Event {
+        @Label("Rows")
+        int rows;
+
+        @Label("Columns")
+        int columns;
+
+        @Label("Matched")
+        @Description("Whether the swap made a match and was kept")
+        boolean matched;
+    }
+
+    @Name("tilematch.CascadeLevel")
+    @Label("Cascade Level")
+    @Description("One pass of checkForMatches that found matches: scan, clear, gravity and refill")
+    @Category({ CATEGORY, "Match Engine" })
+    @StackTrace(false)
+    public static final class CascadeLevel extends Event {
+        @Label("Rows")
+        int rows;
+
+        @Label("Columns")
+        int columns;
+
+        @Label("Cascade Depth")
+        @Description("1 for the matches made by the move itself, 2 for the first chain reaction, and so on")
+        int depth;
+
+        @Label("Cells Cleared")
+        int cellsCleared;
+
+        @Label("Effects Triggered")
+        @Description("Special blocks set off at this level, including chains")
+        int effectsTriggered;
+    }
+
+    @Name("tilematch.Gravity")
+    @Label("Gravity")
+    @Description("Dropping blocks into emptied cells")
+    @Category({ CATEGORY, "Match Engine" })
+    @StackTrace(false)
+    public static final class Gravity extends Event {
+        @Label("Rows")
+        int rows;
+
+        @Label("Columns")
+        int columns;
+    }
+
+    @Name("tilematch.Refill")
+    @Label("Refill")
+    @Description("Filling emptied cells with new random blocks")
+    @Category({ CATEGORY, "Match Engine" })
+    @StackTrace(false)
+    public static final class Refill extends Event {
+        @Label("Rows")
+        int rows;
+
+        @Label("Columns")
+        int columns;
+
+        @Label("Cells Filled")
+        int cellsFilled;
+    }
+
+    @Name("tilematch.BoardGeneration")
+    @Label("Board Generation")
+    @Description("Generating a board without matches")
+    @Category({ CATEGORY, "Match Engine" })
+    @StackTrace(false)
+    public static final class BoardGeneration extends Event {
+        @Label("Rows")
+        int rows;
+
+        @Label("Columns")
+        int columns;
+
+        @Label("Attempts")
+        int attempts;
+
+        @Label("Used Fallback Pattern")
+        @Description("Whether every attempt had matches and the fixed pattern was used instead")
+        boolean fallback;
+    }
+
+    @Name("tilematch.Session")
+    @Label("Game Session")
+    @Description("A game session from start to end")
+    @Category({ CATEGORY, "Sessions" })
+    @StackTrace(false)
+    public static final class Session extends Event {
+        @Label("Kind")
+        @Description("window, headless or match")
+        String kind;
+
+        @Label("Game")
+        String game;
+
+        @Label("Session Id")
+        int id;
+
+        @Label("Rows")
+        int rows;
+
+        @Label("Columns")
+        int columns;
+
+        /**
+         * Ends the event and commits it if it is enabled.
+         *
+         * @param kind     window, headless or match
+         * @param gameType The game played, or null if it is not known
+         * @param id       The session or match id, or 0 if there is none
+         * @param grid     The session's grid
+         */
+        void finish(String kind, GameType gameType, int id, Grid grid) {
+            end();
+            if (shouldCommit()) {
+                this.kind = kind;
+                this.game = gameType == null ? null : gameType.name();
+                this.id = id;
+                this.rows = grid.getRows();
+                this.columns = grid.getColumns();
+                commit();
+            }
+        }
+    }
+}
@@ -2,6 +2,8 @@ package tilematch;
 
 import java.awt.event.KeyAdapter;
 import java.awt.event.KeyEvent;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntConsumer;
 
 import javax.swing.JOptionPane;
 
@@ -11,17 +13,49 @@ import javax.swing.JOptionPane;
 public abstract class GameLauncher {
     protected static final int WINDOW_WIDTH = 800;
     protected static final int WINDOW_HEIGHT = 600;
+    protected static final long FRAME_MILLIS = 16; // ~60 FPS
+    // The board size, palette, and window and cell sizes to launch with
+    protected final GameConfig config;
     protected Display display;
     protected GameState gameState;
-    protected boolean running;
+    protected volatile boolean running;
+    private volatile boolean stopped = false;
     protected long lastUpdateTime;
 
+    // Guards wakePending; the loop parks on this monitor while the game is idle
+    private final Object wakeLock = new Object();
+    private boolean wakePending = false;
+
+    // Commands queued by the event dispatch thread, drained by the game loop
+    protected final InputQueue inputQueue = new InputQueue(256);
+    private final IntConsumer commandHandler = command -> gameState.handleCommand(command);
+    // When the oldest key press not yet on screen was queued, or 0 if there is none
+    private final AtomicLong pendingInputNanos = new AtomicLong();
+
+    /**
+     * Creates a new GameLauncher with the shared config.
+     */
+    protected GameLauncher() {
+        this(GameConfig.shared());
+    }
+
+    /**
+     * Creates a new GameLauncher.
+     *
+     * @param config The board size, palette, and window and cell sizes
+     */
+    protected GameLauncher(GameConfig config) {
+        this.config = config;
+    }
+
     /**
      * Runs the game.
      */
     public void run() {
         initialize();
-        gameLoop();
+        if (!stopped) {
+            gameLoop();
+        }
     }
 
     /**
@@ -30,27 +64,155 @@ public abstract class GameLauncher {
     protected abstract void initialize();
 
     /**
-     * The main game loop.
+     * The main game loop. Runs at up to ~60 FPS while the game state has
+     * pending work (timers, animations) and parks when it is idle until an
+     * input event or {@link #requestUpdate()} wakes it. Key presses wait in
+     * the input queue while blocks are sliding into place. Each frame reads
+     * the animation clock once (see {@link Grid#beginFrame()}), and the loop
+     * does not park while input is waiting or after a frame that began
+     * mid-animation, so a tween's final positions are drawn and held-back keys
+     * are handled. The grid is drawn through a camera fitted to the window by
+     * the config, so boards larger than the window scroll.
      */
     protected void gameLoop() {
-        while (running) {
+        gameState.setUpdateRequester(this::requestUpdate);
+        Grid board = gameState.getGrid();
+        board.setAnimator(new GridAnimator(board.getRows(), board.getColumns()));
+        board.setCamera(config.createCamera(board));
+        GameEvents.Session session = new GameEvents.Session();
+        session.begin();
+        while (running && !stopped) {
             long currentTime = System.nanoTime();
             double deltaTime = (currentTime - lastUpdateTime) / 1_000_000_000.0;
             lastUpdateTime = currentTime;
 
+            FrameMetrics metrics = gameState.getMetrics();
+            Grid grid = gameState.getGrid();
+            long inputNanos = 0;
+            GameEvents.FrameUpdate updateEvent = new GameEvents.FrameUpdate();
+            updateEvent.begin();
+            grid.beginFrame();
+            if (!grid.isAnimating()) {
+                inputNanos = pendingInputNanos.getAndSet(0);
+                inputQueue.drain(commandHandler);
+            }
             gameState.update(deltaTime);
+            updateEvent.end();
+            metrics.getUpdate().recordSince(currentTime);
+            if (updateEvent.shouldCommit()) {
+                updateEvent.rows = grid.getRows();
+                updateEvent.columns = grid.getColumns();
+                updateEvent.commit();
+            }
+
+            long renderStart = System.nanoTime();
+            GameEvents.FrameRender renderEvent = new GameEvents.FrameRender();
+            renderEvent.begin();
             display.render(gameState);
+            renderEvent.end();
+            metrics.getRender().recordSince(renderStart);
+            if (renderEvent.shouldCommit()) {
+                renderEvent.rows = grid.getRows();
+                renderEvent.columns = grid.getColumns();
+                renderEvent.commit();
+            }
+            if (inputNanos != 0) {
+                metrics.getInputLatency().recordSince(inputNanos);
+            }
 
+            // A tween running at the frame's start, or begun during it, needs
+            // another frame to be drawn finished
+            boolean busy = grid.isAnimating() || !inputQueue.isEmpty();
+            awaitNextFrame(busy ? FRAME_MILLIS : gameState.getNextUpdateDelayMillis());
+        }
+        session.finish("window", gameState.getGameType(), 0, gameState.getGrid());
+        gameState.dispose();
+    }
+
+    /**
+     * Blocks until the next frame is due. A negative delay parks the loop until
+     * it is woken; otherwise the wait is at least one frame and at most the
+     * requested delay.
+     *
+     * @param delayMillis Time until the game state next needs an update, or -1
+     *                    if it is idle
+     */
+    private void awaitNextFrame(long delayMillis) {
+        synchronized (wakeLock) {
+            long deadline = System.nanoTime() + Math.max(delayMillis, FRAME_MILLIS) * 1_000_000L;
             try {
-                Thread.sleep(16); // ~60 FPS
+                while (!wakePending && running && !stopped) {
+                    if (delayMillis < 0) {
+                        wakeLock.wait();
+                    } else {
+                        long remaining = (deadline - System.nanoTime()) / 1_000_000L;
+                        if (remaining <= 0) {
+                            break;
+                        }
+                        wakeLock.wait(remaining);
+                    }
+                }
             } catch (InterruptedException e) {
-                e.printStackTrace();
+                Thread.currentThread().interrupt();
+                running = false;
             }
+            wakePending = false;
+        }
+    }
+
+    /**
+     * Wakes the game loop so it runs another update and render. Safe to call
+     * from any thread.
+     */
+    public void requestUpdate() {
+        synchronized (wakeLock) {
+            wakePending = true;
+            wakeLock.notifyAll();
+        }
+    }
+
+    /**
+     * Stops the game loop after the current frame. A launcher that is stopped
+     * before it starts never enters its loop.
+     */
+    public void stop() {
+        stopped = true;
+        running = false;
+        requestUpdate();
+    }
+
+    /**
+     * Queues an input command for the game loop and wakes it. Must only be
+     * called from the event dispatch thread.
+     *
+     * @param command The command to queue (see {@link InputCommand})
+     */
+    protected void queueCommand(int command) {
+        if (inputQueue.offer(command)) {
+            pendingInputNanos.compareAndSet(0, System.nanoTime());
+            requestUpdate();
         }
     }
 
     /**
-     * Handles key presses. Must be implemented by subclasses.
+     * Creates the key listener that passes key presses to
+     * {@link #handleKeyPress(int)}.
+     *
+     * @return The key listener to register with the display
+     */
+    protected KeyAdapter createKeyListener() {
+        return new KeyAdapter() {
+            @Override
+            public void keyPressed(KeyEvent e) {
+                handleKeyPress(e.getKeyCode());
+            }
+        };
+    }
+
+    /**
+     * Handles key presses by queueing the matching input command. Runs on the
+     * event dispatch thread, so it must not touch the game state. Must be
+     * implemented by subclasses.
      *
      * @param keyCode The key code of the pressed key
      */
@@ -0,0 +1,180 @@
+package tilematch;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * The GameSession class runs one headless game inside a {@link SessionHost}.
+ * A session has no thread of its own. Commands are added to its mailbox, and
+ * the session is scheduled onto one of the host's carrier threads only while
+ * it has work, so an idle session costs nothing but its game state. At most
+ * one carrier runs a given session at a time, so the game state is never
+ * touched by two threads at once.
+ */
+public class GameSession {
+    private final int id;
+    private final GameType gameType;
+    private final GameState state;
+    private final Executor carriers;
+    private final Queue<Integer> mailbox = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean scheduled = new AtomicBoolean(false);
+    private long lastUpdateTime;
+    private volatile boolean closed = false;
+    private boolean disposed = false;
+    private final GameEvents.Session sessionEvent = new GameEvents.Session();
+
+    /**
+     * Creates a new GameSession.
+     *
+     * @param id          The session id
+     * @param gameType    The game to play
+     * @param rows        The number of rows in the grid
+     * @param columns     The number of columns in the grid
+     * @param player1Name Player 1's name
+     * @param player2Name Player 2's name
+     * @param carriers    The threads that run the session's work
+     */
+    GameSession(int id, GameType gameType, int rows, int columns, String player1Name, String player2Name,
+            Executor carriers) {
+        this.id = id;
+        this.gameType = gameType;
+        this.carriers = carriers;
+        this.state = gameType.createState(rows, columns);
+        this.state.setMessage(state.setPlayerNames(player1Name, player2Name));
+        this.state.setUpdateRequester(this::schedule);
+        this.lastUpdateTime = System.nanoTime();
+        sessionEvent.begin();
+    }
+
+    /**
+     * Queues an input command for this session. Safe to call from any thread.
+     * Returning to the menu has no meaning without a window and is ignored.
+     *
+     * @param command The command to queue (see {@link InputCommand})
+     */
+    public void submit(int command) {
+        if (closed || InputCommand.command(command) == InputCommand.MENU) {
+            return;
+        }
+        mailbox.add(command);
+        schedule();
+    }
+
+    /**
+     * Queues an input string for this session. Safe to call from any thread.
+     *
+     * @param input The input, as accepted by GameState.handleInput
+     */
+    public void submit(String input) {
+        int command = InputCommand.fromInput(input);
+        if (command != InputCommand.NONE) {
+            submit(command);
+        }
+    }
+
+    /**
+     * Schedules the session on a carrier thread unless it is already scheduled.
+     */
+    private void schedule() {
+        if (scheduled.compareAndSet(false, true)) {
+            carriers.execute(this::runPending);
+        }
+    }
+
+    /**
+     * Handles every queued command and updates the game. Runs on a carrier.
+     */
+    private void runPending() {
+        try {
+            if (closed) {
+                if (!disposed) {
+                    disposed = true;
+                    sessionEvent.finish("headless", gameType, id, state.getGrid());
+                    state.dispose();
+                }
+                return;
+            }
+            GameEvents.FrameUpdate event = new GameEvents.FrameUpdate();
+            event.begin();
+            Integer command;
+            while ((command = mailbox.poll()) != null) {
+                state.handleCommand(command);
+            }
+            long currentTime = System.nanoTime();
+            state.update((currentTime - lastUpdateTime) / 1_000_000_000.0);
+            lastUpdateTime = currentTime;
+            event.end();
+            if (event.shouldCommit()) {
+                event.rows = state.getGrid().getRows();
+                event.columns = state.getGrid().getColumns();
+                event.commit();
+            }
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+        } finally {
+            scheduled.set(false);
+            // A command, timer expiry or close may have arrived after the queues were
+            // emptied, while this run still held the schedule and so could not be woken
+            if (closed ? !disposed : !mailbox.isEmpty() || state.hasPostedCommands()) {
+                schedule();
+            }
+        }
+    }
+
+    /**
+     * Ends the session and releases its timers. Queued commands are dropped.
+     */
+    void close() {
+        closed = true;
+        mailbox.clear();
+        schedule();
+    }
+
+    /**
+     * Gets the session id.
+     *
+     * @return The session id
+     */
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * Gets the game played in this session.
+     *
+     * @return The game type
+     */
+    public GameType getGameType() {
+        return gameType;
+    }
+
+    /**
+     * Gets the game state. Only safe to inspect from the session's own work
+     * or once the session is idle.
+     *
+     * @return The game state
+     */
+    public GameState getState() {
+        return state;
+    }
+
+    /**
+     * Gets the number of wins each player has in this session.
+     *
+     * @return Array containing player 1 and player 2 wins
+     */
+    public int[] getPlayerWins() {
+        return state.getPlayerWins();
+    }
+
+    /**
+     * Checks if the session has no queued or running work.
+     *
+     * @return True if the session is idle, false otherwise
+     */
+    public boolean isIdle() {
+        return !scheduled.get() && mailbox.isEmpty();
+    }
+}
@@ -0,0 +1,114 @@
+package tilematch;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import javax.swing.SwingUtilities;
+
+/**
+ * The GameSessionManager class owns the lifecycle of game sessions.
+ * Every game loop runs on the same single loop thread. Launching a new game
+ * stops the current session first, and because the loop thread runs one
+ * session at a time, the new loop only starts once the previous one has
+ * returned. Playing any number of games in one process therefore keeps exactly
+ * one loop thread alive.
+ */
+public final class GameSessionManager {
+    private static final ExecutorService LOOP_EXECUTOR = Executors.newSingleThreadExecutor(
+            runnable -> new Thread(runnable, "game-loop"));
+
+    private static GameLauncher currentLauncher;
+    private static Future<?> currentSession;
+
+    private GameSessionManager() {
+    }
+
+    /**
+     * Stops the current session, if any, and starts the specified game on the
+     * loop thread once the previous loop has exited.
+     *
+     * @param launcher The launcher of the game to start
+     */
+    public static synchronized void launch(GameLauncher launcher) {
+        stopCurrent();
+        currentLauncher = launcher;
+        currentSession = LOOP_EXECUTOR.submit(() -> {
+            try {
+                launcher.run();
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            }
+        });
+    }
+
+    /**
+     * Stops the current session's game loop. Does not wait for it to exit.
+     */
+    public static synchronized void stopCurrent() {
+        if (currentLauncher != null) {
+            currentLauncher.stop();
+            currentLauncher = null;
+        }
+    }
+
+    /**
+     * Stops the current session, closes its window and shows the game chooser.
+     * Safe to call from the game loop itself.
+     *
+     * @param display The display of the session being closed, or null for a
+     *                headless session
+     */
+    public static void returnToMenu(Display display) {
+        stopCurrent();
+        SwingUtilities.invokeLater(() -> {
+            if (display != null) {
+                display.getFrame().dispose();
+            }
+            new GameChooser();
+        });
+    }
+
+    /**
+     * Waits for the current session's game loop to exit.
+     *
+     * @param timeoutMillis The maximum time to wait in milliseconds
+     * @return True if no session is running anymore, false if the wait timed out
+     */
+    public static boolean awaitCurrent(long timeoutMillis) {
+        Future<?> session;
+        synchronized (GameSessionManager.class) {
+            session = currentSession;
+        }
+        if (session == null) {
+            return true;
+        }
+        try {
+            session.get(timeoutMillis, TimeUnit.MILLISECONDS);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (Exception e) {
+            return session.isDone();
+        }
+    }
+
+    /**
+     * Stops the current session and shuts down the loop thread.
+     *
+     * @param timeoutMillis The maximum time to wait for the loop to exit
+     * @return True if the loop thread terminated, false if the wait timed out
+     */
+    public static boolean shutdown(long timeoutMillis) {
+        stopCurrent();
+        LOOP_EXECUTOR.shutdown();
+        try {
+            return LOOP_EXECUTOR.awaitTermination(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
@@ -10,6 +10,7 @@ import java.util.List;
 import java.util.Queue;
 import java.util.Random;
 import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 /**
  * The GameState class manages the current state of the game.
@@ -24,11 +25,16 @@ public abstract class GameState {
     protected int currPlayerIndex = 0;
     protected Display display;
     protected String message = "";
-    protected static final Random RANDOM = new Random();
-    protected static final Color[] BLOCK_COLORS = {
-            Color.RED, Color.BLUE, Color.GREEN, Color.YELLOW,
-            Color.MAGENTA, Color.CYAN, Color.ORANGE, Color.PINK
-    };
+    // Seeds new games; each game then draws only from its own seeded generator
+    private static final Random SEEDS = new Random();
+    protected final Random random;
+    private final long seed;
+    // The standard palette's colors, in id order (the color with id n is BLOCK_COLORS[n - 1]);
+    // a game launched with another palette gets its colors from getPalette()
+    protected static final Color[] BLOCK_COLORS = Palette.STANDARD.getColors();
+    protected static final Color SELECTION_FILL = new Color(255, 255, 255, 100); // Semi-transparent white
+    protected static final Color SWAP_SELECTION_FILL = new Color(255, 255, 0, 100); // Semi-transparent yellow
+    protected final Palette palette;
     protected int selectedRow = -1;
     protected int selectedCol = -1;
     protected int swapRow = -1;
@@ -37,6 +43,15 @@ public abstract class GameState {
     protected int player2Wins = 0;
     protected boolean swapMode = false;
     protected boolean playerOneFinished = false;
+    protected Runnable updateRequester = () -> {
+    };
+    // Commands posted from other threads (e.g. timer expiry), handled at the next update
+    private final Queue<Integer> postedCommands = new ConcurrentLinkedQueue<>();
+    private ReplayRecorder recorder;
+    private PlayerStatsStore statsStore;
+    private Leaderboard leaderboard;
+    protected final FrameMetrics metrics = new FrameMetrics();
+    private volatile boolean replaying = false;
 
     /**
      * Creates a new GameState with the specified grid dimensions.
@@ -45,6 +60,34 @@ public abstract class GameState {
      * @param columns The number of columns in the grid
      */
     public GameState(int rows, int columns) {
+        this(rows, columns, newSeed());
+    }
+
+    /**
+     * Creates a new GameState whose random board generation is driven by the
+     * specified seed, so the same seed and inputs always replay the same game.
+     *
+     * @param rows    The number of rows in the grid
+     * @param columns The number of columns in the grid
+     * @param seed    The random seed
+     */
+    public GameState(int rows, int columns, long seed) {
+        this(rows, columns, seed, Palette.STANDARD);
+    }
+
+    /**
+     * Creates a new GameState whose blocks are colored from the specified
+     * palette.
+     *
+     * @param rows    The number of rows in the grid
+     * @param columns The number of columns in the grid
+     * @param seed    The random seed
+     * @param palette The palette new blocks are colored from
+     */
+    public GameState(int rows, int columns, long seed, Palette palette) {
+        this.seed = seed;
+        this.palette = palette;
+        this.random = new Random(seed);
         this.grid = new Grid(rows, columns);
         Player playerOne = new Player("Player 1");
         Player playerTwo = new Player("Player 2");
@@ -53,10 +96,6 @@ public abstract class GameState {
         this.activePlayer = players.get(currPlayerIndex);
         this.activeBlocks = new ArrayList<>();
         this.gameOver = false;
-        int[] wins = GameChooser.getPlayerWins();
-        player1Wins = wins[0];
-        player2Wins = wins[1];
-
     }
 
     /**
@@ -65,6 +104,14 @@ public abstract class GameState {
      * @param deltaTime The time elapsed since the last update in seconds
      */
     public void update(double deltaTime) {
+        Integer posted;
+        while ((posted = postedCommands.poll()) != null) {
+            handleCommand(posted);
+        }
+        if (recorder != null) {
+            recorder.endBatch();
+        }
+
         if (gameOver) {
             return;
         }
@@ -74,12 +121,149 @@ public abstract class GameState {
         gameOver = checkGameOver();
     }
 
+    /**
+     * Gets how long the game can go without an update when no input arrives.
+     * Turn-based games have nothing to do between inputs and return -1 so the
+     * game loop can park; games with timers or animations return the delay
+     * until their next visible change.
+     *
+     * @return The delay in milliseconds until the next update is needed, or -1
+     *         if the game is idle
+     */
+    public long getNextUpdateDelayMillis() {
+        return -1;
+    }
+
+    /**
+     * Sets the callback used to wake the game loop when the state changes
+     * outside of input handling.
+     *
+     * @param updateRequester The callback that wakes the game loop
+     */
+    public void setUpdateRequester(Runnable updateRequester) {
+        this.updateRequester = updateRequester;
+    }
+
+    /**
+     * Asks the game loop to run another update and render.
+     */
+    protected void requestUpdate() {
+        updateRequester.run();
+    }
+
+    /**
+     * Posts a command to be handled on the game loop at the next update and
+     * wakes the loop. Safe to call from any thread.
+     *
+     * @param command The command to post (see {@link InputCommand})
+     */
+    protected void postCommand(int command) {
+        if (replaying) {
+            return; // A replay takes timer expiry from its log instead
+        }
+        postedCommands.add(command);
+        requestUpdate();
+    }
+
+    /**
+     * Checks if commands posted from other threads are waiting for the next
+     * update. Safe to call from any thread.
+     *
+     * @return True if a posted command has not been handled yet
+     */
+    public boolean hasPostedCommands() {
+        return !postedCommands.isEmpty();
+    }
+
+    /**
+     * Releases resources held by this state, such as timers, when its session
+     * ends.
+     */
+    public void dispose() {
+        if (recorder != null) {
+            recorder.close();
+            recorder = null;
+        }
+    }
+
+    /**
+     * Creates a seed for a new game.
+     *
+     * @return A random seed
+     */
+    static long newSeed() {
+        synchronized (SEEDS) {
+            return SEEDS.nextLong();
+        }
+    }
+
+    /**
+     * Gets the palette this game's blocks are colored from.
+     *
+     * @return The palette
+     */
+    public Palette getPalette() {
+        return palette;
+    }
+
+    /**
+     * Gets the seed this game's random generator was created with.
+     *
+     * @return The seed
+     */
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * Gets the timing histograms for this game, shown as an overlay when
+     * toggled with {@link InputCommand#METRICS}.
+     *
+     * @return The frame metrics
+     */
+    public FrameMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Sets the recorder that logs every command this state handles. The
+     * recorder is closed when the state is disposed.
+     *
+     * @param recorder The recorder, or null to stop recording
+     */
+    public void setRecorder(ReplayRecorder recorder) {
+        this.recorder = recorder;
+    }
+
+    /**
+     * Marks this state as being driven by a replay. Commands posted by its own
+     * timers are then ignored, since the log already holds them.
+     *
+     * @param replaying True if this state is replaying a log
+     */
+    void setReplaying(boolean replaying) {
+        this.replaying = replaying;
+    }
+
+    /**
+     * Checks if this state is being driven by a replay.
+     *
+     * @return True if this state is replaying a log
+     */
+    protected boolean isReplaying() {
+        return replaying;
+    }
+
     /**
      * Renders the game state to the specified graphics context.
      *
      * @param g The graphics context to render to
      */
     public void render(Graphics g) {
+        Camera camera = grid.getCamera();
+        if (camera != null) {
+            camera.follow(grid, selectedRow, selectedCol);
+        }
         grid.render(g);
 
         // Render active blocks with proper coordinates
@@ -99,6 +283,41 @@ public abstract class GameState {
      */
     public abstract void handleInput(String input);
 
+    /**
+     * Handles a packed input command (see {@link InputCommand}), applying it as
+     * many times as it was repeated.
+     *
+     * @param packed The packed command to handle
+     */
+    public void handleCommand(int packed) {
+        if (InputCommand.command(packed) == InputCommand.METRICS) {
+            metrics.toggleVisible();
+            return;
+        }
+        if (InputCommand.isZoom(InputCommand.command(packed))) {
+            // Zooming only changes the view, so it is not recorded
+            Camera camera = grid.getCamera();
+            if (camera != null) {
+                for (int i = 0; i < InputCommand.repeat(packed); i++) {
+                    if (InputCommand.command(packed) == InputCommand.ZOOM_IN) {
+                        camera.zoomIn(grid, selectedRow, selectedCol);
+                    } else {
+                        camera.zoomOut(grid, selectedRow, selectedCol);
+                    }
+                }
+            }
+            return;
+        }
+        String input = InputCommand.toInput(InputCommand.command(packed));
+        int repeat = InputCommand.repeat(packed);
+        if (recorder != null) {
+            recorder.record(packed);
+        }
+        for (int i = 0; i < repeat; i++) {
+            handleInput(input);
+        }
+    }
+
     /**
      * Updates the game state.
      *
@@ -115,15 +334,19 @@ public abstract class GameState {
         renderInstructions(g);
         renderSelectionHighlight(g);
         renderSwapSelectionHighlight(g);
+        if (metrics.isVisible()) {
+            metrics.renderOverlay(g, grid.getXOffset(),
+                    grid.getYOffset() + grid.getScreenHeight() + 10);
+        }
     }
 
     protected abstract void renderInstructions(Graphics g);
 
     protected void renderSelectionHighlight(Graphics g) {
-        if (selectedRow >= 0 && selectedCol >= 0) {
-            g.setColor(new Color(255, 255, 255, 100)); // Semi-transparent white
-            int x = grid.getXOffset() + selectedCol * grid.getCellSize();
-            int y = grid.getYOffset() + selectedRow * grid.getCellSize();
+        if (selectedRow >= 0 && selectedCol >= 0 && grid.isCellVisible(selectedRow, selectedCol)) {
+            g.setColor(SELECTION_FILL);
+            int x = grid.getCellX(selectedCol);
+            int y = grid.getCellY(selectedRow);
             g.fillRect(x, y, grid.getCellSize(), grid.getCellSize());
 
             g.setColor(Color.WHITE);
@@ -132,10 +355,10 @@ public abstract class GameState {
     }
 
     protected void renderSwapSelectionHighlight(Graphics g) {
-        if (swapMode && swapRow >= 0 && swapCol >= 0) {
-            g.setColor(new Color(255, 255, 0, 100)); // Semi-transparent yellow
-            int x = grid.getXOffset() + swapCol * grid.getCellSize();
-            int y = grid.getYOffset() + swapRow * grid.getCellSize();
+        if (swapMode && swapRow >= 0 && swapCol >= 0 && grid.isCellVisible(swapRow, swapCol)) {
+            g.setColor(SWAP_SELECTION_FILL);
+            int x = grid.getCellX(swapCol);
+            int y = grid.getCellY(swapRow);
             g.fillRect(x, y, grid.getCellSize(), grid.getCellSize());
 
             g.setColor(Color.YELLOW);
@@ -165,6 +388,51 @@ public abstract class GameState {
         return this.activePlayer.getName();
     }
 
+    /**
+     * Gets the index of the player whose turn it is.
+     *
+     * @return 0 for player 1, 1 for player 2
+     */
+    public int getCurrPlayerIndex() {
+        return currPlayerIndex;
+    }
+
+    /**
+     * Gets a player's current score.
+     *
+     * @param index 0 for player 1, 1 for player 2
+     * @return The player's score
+     */
+    public int getPlayerScore(int index) {
+        return players.get(index).getScore();
+    }
+
+    /**
+     * Moves the selection cursor to the specified position, as if the player
+     * had moved it there with the arrow keys.
+     *
+     * @param row    The row to select
+     * @param column The column to select
+     * @return True if the position is on the grid, false otherwise
+     */
+    public boolean select(int row, int column) {
+        if (!grid.isValidPosition(row, column)) {
+            return false;
+        }
+        selectedRow = row;
+        selectedCol = column;
+        return true;
+    }
+
+    /**
+     * Gets the game grid.
+     *
+     * @return The grid
+     */
+    public Grid getGrid() {
+        return grid;
+    }
+
     /**
      * Gets the current score.
      *
@@ -207,10 +475,93 @@ public abstract class GameState {
         return getCurrPlayerName() + "'s Turn!";
     }
 
+    /**
+     * Sets the number of wins each player has going into this game.
+     *
+     * @param player1Wins Player 1's wins
+     * @param player2Wins Player 2's wins
+     */
+    public void setPlayerWins(int player1Wins, int player2Wins) {
+        this.player1Wins = player1Wins;
+        this.player2Wins = player2Wins;
+    }
+
+    /**
+     * Gets the number of wins each player has, including this game.
+     *
+     * @return Array containing player 1 and player 2 wins
+     */
+    public int[] getPlayerWins() {
+        return new int[] { player1Wins, player2Wins };
+    }
+
     public void setMessage(String message) {
         this.message = message;
     }
 
+    /**
+     * Sets the store that finished games are recorded in.
+     *
+     * @param statsStore The store, or null to not record games
+     */
+    public void setStatsStore(PlayerStatsStore statsStore) {
+        this.statsStore = statsStore;
+    }
+
+    /**
+     * Sets the leaderboard that players' final scores are submitted to.
+     *
+     * @param leaderboard The leaderboard for this game, or null to not submit
+     *                    scores
+     */
+    public void setLeaderboard(Leaderboard leaderboard) {
+        this.leaderboard = leaderboard;
+    }
+
+    /**
+     * Gets the game this state plays.
+     *
+     * @return The game type, or null if this game cannot be hosted or recorded
+     *         by type
+     */
+    public GameType getGameType() {
+        return null;
+    }
+
+    /**
+     * Counts a finished game towards the players' wins and records it in the
+     * stats store and leaderboard, if there are any. Must be called before the
+     * scores are reset.
+     *
+     * @param winner The winning player's index, or -1 for a tie
+     */
+    protected void recordResult(int winner) {
+        if (winner == 0) {
+            player1Wins++;
+        } else if (winner == 1) {
+            player2Wins++;
+        }
+        if (statsStore != null && getGameType() != null) {
+            statsStore.recordGame(getGameType(),
+                    new String[] { players.get(0).getName(), players.get(1).getName() },
+                    new int[] { players.get(0).getScore(), players.get(1).getScore() }, winner);
+        }
+        if (leaderboard != null) {
+            for (Player player : players) {
+                leaderboard.submit(player.getName(), player.getScore());
+            }
+        }
+    }
+
+    /**
+     * Saves the player names and ends this session, returning to the game
+     * chooser.
+     */
+    protected void returnToMenu() {
+        GameChooser.updatePlayerNames(players.get(0).getName(), players.get(1).getName());
+        GameSessionManager.returnToMenu(display);
+    }
+
     public void clearGrid() {
         grid.clear();
         resetActivePlayer();
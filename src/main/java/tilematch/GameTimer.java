@@ -0,0 +1,173 @@
+package tilematch;
+
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.concurrent.ScheduledFuture;
+
+/**
+ * The GameTimer class is a pausable, deadline-based countdown created by
+ * {@link GameTimerService}.
+ * A running timer only stores its deadline; the remaining time is computed
+ * when asked, and the expiry callback is fired once by the scheduler. Timers
+ * are serializable: the remaining time and paused state are saved, and
+ * {@link GameTimerService#restore} reattaches the callback.
+ */
+public class GameTimer implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final long durationNanos;
+    private long remainingNanos; // Valid while paused or expired
+    private boolean paused = false;
+    private boolean expired = false;
+
+    private transient long deadlineNanos; // Valid while running
+    private transient GameTimerService service;
+    private transient Runnable callback;
+    private transient ScheduledFuture<?> pending;
+
+    /**
+     * Creates a new stopped GameTimer.
+     *
+     * @param durationNanos The countdown duration in nanoseconds
+     */
+    GameTimer(long durationNanos) {
+        this.durationNanos = durationNanos;
+        this.remainingNanos = durationNanos;
+    }
+
+    /**
+     * Attaches the timer to a service and expiry callback.
+     *
+     * @param service  The service that schedules this timer
+     * @param callback Called when the timer expires
+     */
+    synchronized void attach(GameTimerService service, Runnable callback) {
+        this.service = service;
+        this.callback = callback;
+    }
+
+    /**
+     * Restarts the countdown from the full duration.
+     */
+    public synchronized void restart() {
+        cancelPending();
+        remainingNanos = durationNanos;
+        paused = false;
+        expired = false;
+        reschedule();
+    }
+
+    /**
+     * Pauses the countdown, keeping the remaining time.
+     */
+    public synchronized void pause() {
+        if (paused || expired) {
+            return;
+        }
+        remainingNanos = Math.max(0, deadlineNanos - System.nanoTime());
+        paused = true;
+        cancelPending();
+    }
+
+    /**
+     * Resumes a paused countdown.
+     */
+    public synchronized void resume() {
+        if (!paused) {
+            return;
+        }
+        paused = false;
+        reschedule();
+    }
+
+    /**
+     * Stops the countdown without firing the callback.
+     */
+    public synchronized void cancel() {
+        if (!paused && !expired) {
+            remainingNanos = Math.max(0, deadlineNanos - System.nanoTime());
+        }
+        paused = true;
+        cancelPending();
+    }
+
+    /**
+     * Gets the remaining time.
+     *
+     * @return The remaining time in milliseconds, never negative
+     */
+    public synchronized long getRemainingMillis() {
+        long remaining = paused || expired ? remainingNanos : deadlineNanos - System.nanoTime();
+        return Math.max(0, remaining / 1_000_000L);
+    }
+
+    /**
+     * Checks if the timer is paused or cancelled.
+     *
+     * @return True if the timer is not counting down, false otherwise
+     */
+    public synchronized boolean isPaused() {
+        return paused;
+    }
+
+    /**
+     * Checks if the timer has run out.
+     *
+     * @return True if the timer has expired, false otherwise
+     */
+    public synchronized boolean isExpired() {
+        return expired;
+    }
+
+    /**
+     * Schedules expiry for the current remaining time, unless the timer is
+     * paused or already expired.
+     */
+    synchronized void reschedule() {
+        cancelPending();
+        if (paused || expired || service == null) {
+            return;
+        }
+        deadlineNanos = System.nanoTime() + remainingNanos;
+        pending = service.schedule(this::fire, remainingNanos);
+    }
+
+    /**
+     * Runs on the scheduler thread when the deadline passes.
+     */
+    private void fire() {
+        Runnable toRun;
+        synchronized (this) {
+            if (paused || expired || System.nanoTime() < deadlineNanos) {
+                return; // Paused, cancelled or restarted after this expiry was scheduled
+            }
+            expired = true;
+            remainingNanos = 0;
+            pending = null;
+            toRun = callback;
+        }
+        if (toRun != null) {
+            toRun.run();
+        }
+    }
+
+    private void cancelPending() {
+        if (pending != null) {
+            pending.cancel(false);
+            pending = null;
+        }
+    }
+
+    private synchronized void writeObject(ObjectOutputStream out) throws IOException {
+        if (!paused && !expired) {
+            // Save the time left rather than the deadline, which is meaningless in another JVM
+            long running = remainingNanos;
+            remainingNanos = Math.max(0, deadlineNanos - System.nanoTime());
+            out.defaultWriteObject();
+            remainingNanos = running;
+        } else {
+            out.defaultWriteObject();
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package tilematch;
+
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The GameTimerService class schedules countdown timers for game sessions.
+ * All timers in the JVM share one daemon scheduler thread, and an idle timer
+ * costs nothing but its queue entry, so thousands of concurrent sessions can
+ * each keep several timers. Deadlines are measured with System.nanoTime, so
+ * they do not drift with frame timing or wall-clock changes.
+ */
+public final class GameTimerService {
+    private static final GameTimerService SHARED = new GameTimerService();
+
+    private final ScheduledThreadPoolExecutor scheduler;
+
+    /**
+     * Creates a new GameTimerService with its own scheduler thread.
+     */
+    public GameTimerService() {
+        scheduler = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "game-timers");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // Cancelled timers are dropped immediately instead of waiting for their deadline
+        scheduler.setRemoveOnCancelPolicy(true);
+    }
+
+    /**
+     * Gets the timer service shared by all game sessions.
+     *
+     * @return The shared timer service
+     */
+    public static GameTimerService shared() {
+        return SHARED;
+    }
+
+    /**
+     * Creates and starts a countdown timer.
+     *
+     * @param durationMillis The countdown duration in milliseconds
+     * @param callback       Called on the scheduler thread when the timer
+     *                       expires; must not touch game state directly
+     * @return The running timer
+     */
+    public GameTimer start(long durationMillis, Runnable callback) {
+        GameTimer timer = new GameTimer(TimeUnit.MILLISECONDS.toNanos(durationMillis));
+        timer.attach(this, callback);
+        timer.restart();
+        return timer;
+    }
+
+    /**
+     * Reattaches a deserialized timer to this service. The timer keeps its
+     * remaining time and paused state; a timer that was running when it was
+     * serialized resumes counting down.
+     *
+     * @param timer    The deserialized timer
+     * @param callback Called on the scheduler thread when the timer expires
+     * @return The same timer
+     */
+    public GameTimer restore(GameTimer timer, Runnable callback) {
+        timer.attach(this, callback);
+        timer.reschedule();
+        return timer;
+    }
+
+    /**
+     * Schedules a callback after a delay.
+     *
+     * @param task       The task to run
+     * @param delayNanos The delay in nanoseconds
+     * @return The scheduled task
+     */
+    ScheduledFuture<?> schedule(Runnable task, long delayNanos) {
+        return scheduler.schedule(task, delayNanos, TimeUnit.NANOSECONDS);
+    }
+}
@@ -0,0 +1,82 @@
+package tilematch;
+
+/**
+ * Enum of the games that can be hosted without a launcher, such as in a
+ * headless session.
+ */
+public enum GameType {
+    BEJEWELED("Bejeweled", false) {
+        @Override
+        public GameState createState(int rows, int columns, long seed, Palette palette) {
+            return new BejeweledGameState(rows, columns, seed, palette);
+        }
+    },
+    SAME_GAME("SameGame", true) {
+        @Override
+        public GameState createState(int rows, int columns, long seed, Palette palette) {
+            return new SameGameState(rows, columns, seed, palette);
+        }
+    };
+
+    private final String displayName;
+    private final boolean lowerScoreBetter;
+
+    GameType(String displayName, boolean lowerScoreBetter) {
+        this.displayName = displayName;
+        this.lowerScoreBetter = lowerScoreBetter;
+    }
+
+    /**
+     * Creates a new game state for this game.
+     *
+     * @param rows    The number of rows in the grid
+     * @param columns The number of columns in the grid
+     * @return The new game state
+     */
+    public GameState createState(int rows, int columns) {
+        return createState(rows, columns, GameState.newSeed());
+    }
+
+    /**
+     * Creates a new game state whose board is generated from a seed.
+     *
+     * @param rows    The number of rows in the grid
+     * @param columns The number of columns in the grid
+     * @param seed    The random seed
+     * @return The new game state
+     */
+    public GameState createState(int rows, int columns, long seed) {
+        return createState(rows, columns, seed, Palette.STANDARD);
+    }
+
+    /**
+     * Creates a new game state whose board is generated from a seed in the
+     * specified palette.
+     *
+     * @param rows    The number of rows in the grid
+     * @param columns The number of columns in the grid
+     * @param seed    The random seed
+     * @param palette The palette the blocks are colored from
+     * @return The new game state
+     */
+    public abstract GameState createState(int rows, int columns, long seed, Palette palette);
+
+    /**
+     * Gets the name shown to players for this game.
+     *
+     * @return The display name
+     */
+    public String getDisplayName() {
+        return displayName;
+    }
+
+    /**
+     * Checks if a lower score is better in this game. SameGame counts turns,
+     * so the player who clears the board in fewer turns wins.
+     *
+     * @return True if lower scores are better, false otherwise
+     */
+    public boolean isLowerScoreBetter() {
+        return lowerScoreBetter;
+    }
+}
@@ -3,6 +3,8 @@ package tilematch;
 import java.awt.Color;
 import java.awt.Graphics;
 import java.awt.Point;
+import java.awt.Shape;
+import java.awt.image.BufferedImage;
 import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.Queue;
@@ -14,11 +16,17 @@ import java.util.Set;
  */
 public class Grid {
     private Block[][] cells;
+    // The palette id of each cell's color, or 0 if it is empty; kept in step with cells
+    private byte[][] colorIds;
     private int rows;
     private int columns;
     private int cellSize;
     private int xOffset;
     private int yOffset;
+    private GridAnimator animator; // Null unless the grid is shown in a window
+    private long frameNanos; // The animator's time at the start of the current frame
+    private Camera camera; // Null to draw the whole grid
+    private TileSpriteCache sprites;
 
     /**
      * Creates a new Grid with the specified dimensions.
@@ -30,6 +38,7 @@ public class Grid {
         this.rows = rows;
         this.columns = columns;
         this.cells = new Block[rows][columns];
+        this.colorIds = new byte[rows][columns];
         this.cellSize = 30; // Default cell size
         this.xOffset = 50; // Default X offset
         this.yOffset = 50; // Default Y offset
@@ -48,6 +57,7 @@ public class Grid {
         this.rows = rows;
         this.columns = columns;
         this.cells = new Block[rows][columns];
+        this.colorIds = new byte[rows][columns];
         this.cellSize = cellSize;
         this.xOffset = xOffset;
         this.yOffset = yOffset;
@@ -64,7 +74,7 @@ public class Grid {
     public boolean placeBlock(Block block, int row, int column) {
         if (isValidPosition(row, column) && cells[row][column] == null) {
             cells[row][column] = block;
-            block.setPosition(row, column);
+            colorIds[row][column] = (byte) block.getColorId();
             return true;
         }
         return false;
@@ -81,11 +91,41 @@ public class Grid {
         if (isValidPosition(row, column) && cells[row][column] != null) {
             Block block = cells[row][column];
             cells[row][column] = null;
+            colorIds[row][column] = Palette.EMPTY;
+            if (animator != null) {
+                animator.remove(row, column);
+            }
             return block;
         }
         return null;
     }
 
+    /**
+     * Swaps the blocks at two positions. Either position may be empty.
+     *
+     * @param row1    The row of the first position
+     * @param column1 The column of the first position
+     * @param row2    The row of the second position
+     * @param column2 The column of the second position
+     * @return True if both positions are valid and were swapped, false
+     *         otherwise
+     */
+    public boolean swapBlocks(int row1, int column1, int row2, int column2) {
+        if (!isValidPosition(row1, column1) || !isValidPosition(row2, column2)) {
+            return false;
+        }
+        Block block = cells[row1][column1];
+        cells[row1][column1] = cells[row2][column2];
+        cells[row2][column2] = block;
+        byte colorId = colorIds[row1][column1];
+        colorIds[row1][column1] = colorIds[row2][column2];
+        colorIds[row2][column2] = colorId;
+        if (animator != null) {
+            animator.swap(row1, column1, row2, column2);
+        }
+        return true;
+    }
+
     /**
      * Checks if a position on the grid is valid.
      *
@@ -122,6 +162,46 @@ public class Grid {
         return null;
     }
 
+    /**
+     * Gets the palette id of the block color at the specified position.
+     *
+     * @param row    The row to check
+     * @param column The column to check
+     * @return The color id, or {@link Palette#EMPTY} if there is no block or
+     *         the position is outside the grid
+     */
+    public int getColorId(int row, int column) {
+        if (isValidPosition(row, column)) {
+            return colorIds[row][column] & 0xFF;
+        }
+        return Palette.EMPTY;
+    }
+
+    /**
+     * Gets the color ids of one row, one byte per cell, for matchers that
+     * scan whole rows. The array is the grid's own storage and must not be
+     * changed.
+     *
+     * @param row The row
+     * @return The row's color ids; 0 for empty cells
+     */
+    byte[] colorRow(int row) {
+        return colorIds[row];
+    }
+
+    /**
+     * Gets the block at the specified position together with that position,
+     * for code that needs a block's row and column.
+     *
+     * @param row    The row to get the block from
+     * @param column The column to get the block from
+     * @return The positioned block, or null if there is no block
+     */
+    public Block.Positioned getPositionedBlock(int row, int column) {
+        Block block = getBlock(row, column);
+        return block == null ? null : new Block.Positioned(block, row, column);
+    }
+
     /**
      * Clears the grid.
      */
@@ -129,8 +209,34 @@ public class Grid {
         for (int row = 0; row < rows; row++) {
             for (int column = 0; column < columns; column++) {
                 cells[row][column] = null;
+                colorIds[row][column] = Palette.EMPTY;
             }
         }
+        if (animator != null) {
+            animator.reset();
+        }
+    }
+
+    /**
+     * Replaces the contents of this grid with those of another grid of the
+     * same size. Rows are copied whole, so this is much faster than placing
+     * each block.
+     *
+     * @param source The grid to copy
+     * @throws IllegalArgumentException If the grids differ in size
+     */
+    public void copyFrom(Grid source) {
+        if (source.rows != rows || source.columns != columns) {
+            throw new IllegalArgumentException("Cannot copy a " + source.rows + "x" + source.columns
+                    + " grid into a " + rows + "x" + columns + " grid");
+        }
+        for (int row = 0; row < rows; row++) {
+            System.arraycopy(source.cells[row], 0, cells[row], 0, columns);
+            System.arraycopy(source.colorIds[row], 0, colorIds[row], 0, columns);
+        }
+        if (animator != null) {
+            animator.reset();
+        }
     }
 
     /**
@@ -142,6 +248,10 @@ public class Grid {
         if (row >= 0 && row < rows) {
             for (int column = 0; column < columns; column++) {
                 cells[row][column] = null;
+                colorIds[row][column] = Palette.EMPTY;
+                if (animator != null) {
+                    animator.remove(row, column);
+                }
             }
         }
     }
@@ -156,8 +266,9 @@ public class Grid {
             for (int r = row; r > 0; r--) {
                 for (int column = 0; column < columns; column++) {
                     cells[r][column] = cells[r - 1][column];
-                    if (cells[r][column] != null) {
-                        cells[r][column].setPosition(r, column);
+                    colorIds[r][column] = colorIds[r - 1][column];
+                    if (animator != null && cells[r][column] != null) {
+                        animator.move(r - 1, column, r, column);
                     }
                 }
             }
@@ -165,6 +276,10 @@ public class Grid {
             // Clear the top row
             for (int column = 0; column < columns; column++) {
                 cells[0][column] = null;
+                colorIds[0][column] = Palette.EMPTY;
+                if (animator != null) {
+                    animator.remove(0, column);
+                }
             }
         }
     }
@@ -222,35 +337,117 @@ public class Grid {
     }
 
     /**
-     * Renders the grid to the specified graphics context.
+     * Renders the grid to the specified graphics context. With a camera only
+     * the cells in view are drawn, and still blocks are copied from the
+     * sprite cache. A moving block is drawn if the cell it is moving to is in
+     * view, where it was at the time taken by {@link #beginFrame()}, and
+     * clipped to the view.
      *
      * @param g The graphics context to render to
      */
     public void render(Graphics g) {
+        int size = getCellSize();
+        int firstRow = camera == null ? 0 : camera.getFirstRow();
+        int firstColumn = camera == null ? 0 : camera.getFirstColumn();
+        int visibleRows = camera == null ? rows : camera.getVisibleRows(this);
+        int visibleColumns = camera == null ? columns : camera.getVisibleColumns(this);
+        int width = visibleColumns * size;
+        int height = visibleRows * size;
+
         // Draw the grid background
         g.setColor(Color.DARK_GRAY);
-        g.fillRect(xOffset, yOffset, columns * cellSize, rows * cellSize);
+        g.fillRect(xOffset, yOffset, width, height);
 
         // Draw the grid lines
         g.setColor(Color.GRAY);
-        for (int row = 0; row <= rows; row++) {
-            g.drawLine(xOffset, yOffset + row * cellSize,
-                    xOffset + columns * cellSize, yOffset + row * cellSize);
+        for (int row = 0; row <= visibleRows; row++) {
+            g.drawLine(xOffset, yOffset + row * size, xOffset + width, yOffset + row * size);
         }
 
-        for (int column = 0; column <= columns; column++) {
-            g.drawLine(xOffset + column * cellSize, yOffset,
-                    xOffset + column * cellSize, yOffset + rows * cellSize);
+        for (int column = 0; column <= visibleColumns; column++) {
+            g.drawLine(xOffset + column * size, yOffset, xOffset + column * size, yOffset + height);
         }
 
-        // Draw the blocks
-        for (int row = 0; row < rows; row++) {
-            for (int column = 0; column < columns; column++) {
-                if (cells[row][column] != null) {
-                    cells[row][column].render(g, xOffset + column * cellSize, yOffset + row * cellSize, cellSize);
+        // Draw the blocks, part way along their tweens while they move; moving
+        // blocks may lie part way out of the view, so drawing is clipped to it
+        long now = frameNanos;
+        boolean animating = isAnimating();
+        Shape clip = g.getClip();
+        g.clipRect(xOffset, yOffset, width, height);
+        for (int row = firstRow; row < firstRow + visibleRows; row++) {
+            int y = yOffset + (row - firstRow) * size;
+            for (int column = firstColumn; column < firstColumn + visibleColumns; column++) {
+                Block block = cells[row][column];
+                if (block == null) {
+                    continue;
+                }
+                int x = xOffset + (column - firstColumn) * size;
+                if (animating) {
+                    int cell = row * columns + column;
+                    float drawRow = animator.rowAt(cell, row, now);
+                    float drawColumn = animator.columnAt(cell, column, now);
+                    if (drawRow != row || drawColumn != column) {
+                        // Blocks still wholly above the view are not drawn yet
+                        if (drawRow > firstRow - 1f) {
+                            block.render(g, xOffset + Math.round((drawColumn - firstColumn) * size),
+                                    yOffset + Math.round((drawRow - firstRow) * size), size);
+                        }
+                        continue;
+                    }
+                }
+                BufferedImage sprite = sprites == null ? null : sprites.get(block, size);
+                if (sprite != null) {
+                    g.drawImage(sprite, x, y, null);
+                } else {
+                    block.render(g, x, y, size);
                 }
             }
         }
+        g.setClip(clip);
+    }
+
+    /**
+     * Sets the animator that slides blocks between cells when they are
+     * swapped or fall (see {@link GridAnimator}). Grids that are never drawn
+     * have none.
+     *
+     * @param animator The animator, or null to draw blocks in their cells
+     */
+    public void setAnimator(GridAnimator animator) {
+        this.animator = animator;
+    }
+
+    /**
+     * Gets the animator that slides blocks between cells.
+     *
+     * @return The animator, or null if blocks are drawn in their cells
+     */
+    public GridAnimator getAnimator() {
+        return animator;
+    }
+
+    /**
+     * Starts a frame. Until the next frame starts, the grid is drawn and its
+     * animation checked at the time taken here, so a tween that ends part way
+     * through a frame cannot be seen as running by one step of the frame and
+     * finished by another.
+     *
+     * @return The frame's time on the animator's clock, or 0 without an
+     *         animator
+     */
+    public long beginFrame() {
+        frameNanos = animator == null ? 0 : animator.now();
+        return frameNanos;
+    }
+
+    /**
+     * Checks whether any block is still sliding into its cell at the time the
+     * current frame began. A tween started during the frame counts as running.
+     *
+     * @return True if the grid has an animator with a tween running
+     */
+    public boolean isAnimating() {
+        return animator != null && animator.isAnimating(frameNanos);
     }
 
     /**
@@ -277,7 +474,83 @@ public class Grid {
      * @return The cell size
      */
     public int getCellSize() {
-        return cellSize;
+        return camera == null ? cellSize : camera.getCellSize();
+    }
+
+    /**
+     * Sets the camera that chooses the part of the grid drawn and its zoom.
+     * A grid with a camera also keeps a {@link TileSpriteCache} for drawing
+     * still blocks.
+     *
+     * @param camera The camera, or null to draw the whole grid at the cell
+     *               size it was created with
+     */
+    public void setCamera(Camera camera) {
+        this.camera = camera;
+        this.sprites = camera == null ? null : new TileSpriteCache(Color.GRAY, Color.DARK_GRAY);
+    }
+
+    /**
+     * Gets the camera that chooses the part of the grid drawn.
+     *
+     * @return The camera, or null if the whole grid is drawn
+     */
+    public Camera getCamera() {
+        return camera;
+    }
+
+    /**
+     * Gets the X coordinate a column is drawn at.
+     *
+     * @param column The column
+     * @return The X coordinate of the column's left edge, in pixels
+     */
+    public int getCellX(int column) {
+        return xOffset + (column - (camera == null ? 0 : camera.getFirstColumn())) * getCellSize();
+    }
+
+    /**
+     * Gets the Y coordinate a row is drawn at.
+     *
+     * @param row The row
+     * @return The Y coordinate of the row's top edge, in pixels
+     */
+    public int getCellY(int row) {
+        return yOffset + (row - (camera == null ? 0 : camera.getFirstRow())) * getCellSize();
+    }
+
+    /**
+     * Checks whether a cell is drawn.
+     *
+     * @param row    The row
+     * @param column The column
+     * @return True if the cell is on the grid and in the camera's view
+     */
+    public boolean isCellVisible(int row, int column) {
+        if (camera == null) {
+            return isValidPosition(row, column);
+        }
+        return row >= camera.getFirstRow() && row < camera.getFirstRow() + camera.getVisibleRows(this)
+                && column >= camera.getFirstColumn()
+                && column < camera.getFirstColumn() + camera.getVisibleColumns(this);
+    }
+
+    /**
+     * Gets the width of the grid as drawn.
+     *
+     * @return The width in pixels of the columns in view
+     */
+    public int getScreenWidth() {
+        return (camera == null ? columns : camera.getVisibleColumns(this)) * getCellSize();
+    }
+
+    /**
+     * Gets the height of the grid as drawn.
+     *
+     * @return The height in pixels of the rows in view
+     */
+    public int getScreenHeight() {
+        return (camera == null ? rows : camera.getVisibleRows(this)) * getCellSize();
     }
 
     /**
@@ -302,26 +575,33 @@ public class Grid {
      * Applies gravity to make blocks fall into empty spaces.
      */
     public void applyGravity() {
-        // For each column
+        GameEvents.Gravity event = new GameEvents.Gravity();
+        event.begin();
+        // Blocks are shared, so falling is just moving references down each column
         for (int col = 0; col < columns; col++) {
-            // Start from the bottom row
+            int target = rows - 1;
             for (int row = rows - 1; row >= 0; row--) {
-                // If the cell is empty
-                if (!isOccupied(row, col)) {
-                    // Find the first non-empty cell above
-                    int aboveRow = row - 1;
-                    while (aboveRow >= 0) {
-                        if (isOccupied(aboveRow, col)) {
-                            // Move the block down
-                            Block block = removeBlock(aboveRow, col);
-                            placeBlock(block, row, col);
-                            break;
+                Block block = cells[row][col];
+                if (block != null) {
+                    if (row != target) {
+                        cells[target][col] = block;
+                        cells[row][col] = null;
+                        colorIds[target][col] = colorIds[row][col];
+                        colorIds[row][col] = Palette.EMPTY;
+                        if (animator != null) {
+                            animator.move(row, col, target, col);
                         }
-                        aboveRow--;
                     }
+                    target--;
                 }
             }
         }
+        event.end();
+        if (event.shouldCommit()) {
+            event.rows = rows;
+            event.columns = columns;
+            event.commit();
+        }
     }
 
     /**
@@ -329,10 +609,10 @@ public class Grid {
      * 
      * @param startRow    The starting row
      * @param startCol    The starting column
-     * @param targetColor The color to match
+     * @param colorId     The palette id of the color to match
      * @return Set of Points representing connected blocks
      */
-    public Set<Point> findConnectedBlocks(int startRow, int startCol, Color targetColor) {
+    public Set<Point> findConnectedBlocks(int startRow, int startCol, int colorId) {
         Set<Point> visited = new HashSet<>();
         Queue<Point> queue = new LinkedList<>();
 
@@ -354,18 +634,11 @@ public class Grid {
                 int newCol = current.y + dir[1];
                 Point newPoint = new Point(newRow, newCol);
 
-                // Check if the position is valid and not visited
-                if (isValidPosition(newRow, newCol) &&
-                        isOccupied(newRow, newCol) &&
-                        !visited.contains(newPoint)) {
-
-                    Block block = getBlock(newRow, newCol);
-
-                    // If the block has the same color, add it to the queue
-                    if (block.getColor().equals(targetColor)) {
-                        queue.add(newPoint);
-                        visited.add(newPoint);
-                    }
+                // Empty and outside cells have id 0, which never matches a block
+                if (colorId != Palette.EMPTY && getColorId(newRow, newCol) == colorId
+                        && !visited.contains(newPoint)) {
+                    queue.add(newPoint);
+                    visited.add(newPoint);
                 }
             }
         }
@@ -0,0 +1,205 @@
+package tilematch;
+
+import java.util.Arrays;
+
+/**
+ * The GridAnimator class animates blocks moving between cells, so that swaps,
+ * falls and refills slide into place instead of jumping.
+ * The grid reports each move as it happens; the animator records, for the
+ * cell a block lands in, where the block was drawn at that moment and when
+ * it started moving, and {@link Grid#render(java.awt.Graphics)} draws the
+ * block part of the way between the two. A block that moves again before it
+ * arrives, as in a cascade, continues from wherever it was drawn, so a whole
+ * cascade, worked out at once by the rules engine, plays out as one smooth
+ * motion.
+ *
+ * Tweens are kept in primitive arrays indexed row * columns + column, and
+ * recording or drawing one allocates nothing. The game loop holds back input
+ * while a tween is running (see {@link #isAnimating(long)}). An animator is
+ * used by the game loop thread only.
+ */
+public class GridAnimator {
+    /**
+     * How long a swap takes, in milliseconds.
+     */
+    public static final int SWAP_MILLIS = 150;
+    /**
+     * How long a block takes to fall one row, in milliseconds.
+     */
+    public static final int FALL_MILLIS_PER_ROW = 50;
+    /**
+     * The longest a move takes, in milliseconds, however far the block goes.
+     */
+    public static final int MAX_MOVE_MILLIS = 500;
+
+    private final int columns;
+    // Where the block now in each cell was drawn when its tween started, in cells
+    private final float[] fromRow;
+    private final float[] fromColumn;
+    private final long[] startNanos;
+    private final int[] durationNanos; // 0 when the cell is not moving
+    private long endNanos; // When the last running tween ends
+
+    /**
+     * Creates a new GridAnimator for a grid of the specified size.
+     *
+     * @param rows    The number of rows
+     * @param columns The number of columns
+     */
+    public GridAnimator(int rows, int columns) {
+        this.columns = columns;
+        this.fromRow = new float[rows * columns];
+        this.fromColumn = new float[rows * columns];
+        this.startNanos = new long[rows * columns];
+        this.durationNanos = new int[rows * columns];
+        this.endNanos = now();
+    }
+
+    /**
+     * Gets the current time on the animator's clock.
+     *
+     * @return The time in nanoseconds
+     */
+    public long now() {
+        return System.nanoTime();
+    }
+
+    /**
+     * Checks whether any block is still moving.
+     *
+     * @param now The current time from {@link #now()}
+     * @return True if a tween is running
+     */
+    public boolean isAnimating(long now) {
+        return now - endNanos < 0;
+    }
+
+    /**
+     * Records a block moving from one cell to another. The source cell is left
+     * still.
+     *
+     * @param fromRow The row the block left
+     * @param fromCol The column the block left
+     * @param toRow   The row the block moved to
+     * @param toCol   The column the block moved to
+     */
+    public void move(int fromRow, int fromCol, int toRow, int toCol) {
+        long now = now();
+        int from = fromRow * columns + fromCol;
+        start(toRow * columns + toCol, rowAt(from, fromRow, now), columnAt(from, fromCol, now), toRow, toCol,
+                now, FALL_MILLIS_PER_ROW);
+        durationNanos[from] = 0;
+    }
+
+    /**
+     * Records the blocks in two cells trading places.
+     *
+     * @param row1 The row of the first cell
+     * @param col1 The column of the first cell
+     * @param row2 The row of the second cell
+     * @param col2 The column of the second cell
+     */
+    public void swap(int row1, int col1, int row2, int col2) {
+        long now = now();
+        int first = row1 * columns + col1;
+        int second = row2 * columns + col2;
+        float firstRow = rowAt(first, row1, now);
+        float firstColumn = columnAt(first, col1, now);
+        start(first, rowAt(second, row2, now), columnAt(second, col2, now), row1, col1, now, SWAP_MILLIS);
+        start(second, firstRow, firstColumn, row2, col2, now, SWAP_MILLIS);
+    }
+
+    /**
+     * Records a new block dropping into a cell from above the grid.
+     *
+     * @param row     The row the block was placed in
+     * @param col     The column the block was placed in
+     * @param fromRow The row above the grid it falls from; negative
+     */
+    public void enter(int row, int col, int fromRow) {
+        start(row * columns + col, fromRow, col, row, col, now(), FALL_MILLIS_PER_ROW);
+    }
+
+    /**
+     * Stops the tween of a cell whose block was removed.
+     *
+     * @param row The row of the cell
+     * @param col The column of the cell
+     */
+    public void remove(int row, int col) {
+        durationNanos[row * columns + col] = 0;
+    }
+
+    /**
+     * Stops every tween.
+     */
+    public void reset() {
+        Arrays.fill(durationNanos, 0);
+        endNanos = now();
+    }
+
+    /**
+     * Gets the row a cell's block is drawn at.
+     *
+     * @param cell The cell index, row * columns + column
+     * @param row  The cell's row, where the block ends up
+     * @param now  The current time from {@link #now()}
+     * @return The row, with a fraction while the block is moving
+     */
+    public float rowAt(int cell, int row, long now) {
+        float t = progress(cell, now);
+        return t >= 1f ? row : fromRow[cell] + (row - fromRow[cell]) * t;
+    }
+
+    /**
+     * Gets the column a cell's block is drawn at.
+     *
+     * @param cell   The cell index, row * columns + column
+     * @param column The cell's column, where the block ends up
+     * @param now    The current time from {@link #now()}
+     * @return The column, with a fraction while the block is moving
+     */
+    public float columnAt(int cell, int column, long now) {
+        float t = progress(cell, now);
+        return t >= 1f ? column : fromColumn[cell] + (column - fromColumn[cell]) * t;
+    }
+
+    /**
+     * Gets how far along a cell's tween is, eased so blocks slow as they land.
+     *
+     * @return 1 if the cell is not moving
+     */
+    private float progress(int cell, long now) {
+        int duration = durationNanos[cell];
+        if (duration == 0) {
+            return 1f;
+        }
+        long elapsed = now - startNanos[cell];
+        if (elapsed <= 0) {
+            // Started after the frame being drawn began
+            return 0f;
+        }
+        if (elapsed >= duration) {
+            durationNanos[cell] = 0;
+            return 1f;
+        }
+        float t = (float) elapsed / duration;
+        return t * (2f - t);
+    }
+
+    private void start(int cell, float row, float column, int toRow, int toCol, long now, int millisPerCell) {
+        float distance = Math.max(Math.abs(toRow - row), Math.abs(toCol - column));
+        if (distance < 0.01f) {
+            durationNanos[cell] = 0;
+            return;
+        }
+        int millis = Math.min(MAX_MOVE_MILLIS, Math.round(millisPerCell * Math.max(1f, distance)));
+        fromRow[cell] = row;
+        fromColumn[cell] = column;
+        startNanos[cell] = now;
+        durationNanos[cell] = millis * 1_000_000;
+        if (endNanos - (now + durationNanos[cell]) < 0) {
+            endNanos = now + durationNanos[cell];
+        }
+    }
+}
@@ -0,0 +1,426 @@
+package tilematch;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * The GridDelta class encodes changes to a {@link Grid} as compact binary
+ * frames and applies them to another grid.
+ * A cell is described by a small code: its block type's ordinal shifted left
+ * four bits, or'd with its color id in {@link Palette#STANDARD}, or 0 for an
+ * empty cell. A standard block's code is its color id, so boards without
+ * special blocks pack as tightly as colors alone; each frame packs its codes
+ * at the fewest bits that hold its largest code. A frame is either a
+ * keyframe with every cell, or a delta that only describes changed columns.
+ * A changed column is written either as a gravity step (which cells were
+ * removed, and the new cells that fell in at the top) or as a list of changed
+ * cells, whichever is smaller. A Bejeweled move, including its cascades,
+ * typically encodes in a few tens of bytes.
+ *
+ * <pre>
+ * frame    := kind:u8 rows:varint columns:varint bits:u8 body
+ * keyframe := codes for every cell, row by row, packed at bits per code
+ * delta    := count:varint column*
+ * column   := skip:varint op:u8 (gravity | cells)
+ * gravity  := removed:varint rowGap:varint* codes for the refills at the top
+ * cells    := changed:varint (rowGap:varint code:u8)*
+ * </pre>
+ */
+public final class GridDelta {
+    public static final byte KEYFRAME = 0;
+    public static final byte DELTA = 1;
+
+    private static final byte OP_GRAVITY = 0;
+    private static final byte OP_CELLS = 1;
+    // A code is typeOrdinal << TYPE_SHIFT | colorId
+    private static final int TYPE_SHIFT = 4;
+    private static final int COLOR_MASK = (1 << TYPE_SHIFT) - 1;
+    private static final Block.BlockType[] TYPES = Block.BlockType.values();
+
+    private GridDelta() {
+    }
+
+    /**
+     * Captures the cell codes of a grid, row by row, so later changes can be
+     * encoded against it.
+     *
+     * @param grid The grid to capture
+     * @return The cell codes
+     */
+    public static byte[] capture(Grid grid) {
+        byte[] codes = new byte[grid.getRows() * grid.getColumns()];
+        capture(grid, codes);
+        return codes;
+    }
+
+    /**
+     * Captures the cell codes of a grid into an existing array.
+     *
+     * @param grid  The grid to capture
+     * @param codes The array to fill, at least rows * columns long
+     */
+    public static void capture(Grid grid, byte[] codes) {
+        int columns = grid.getColumns();
+        for (int row = 0; row < grid.getRows(); row++) {
+            for (int col = 0; col < columns; col++) {
+                codes[row * columns + col] = (byte) codeOf(grid.getBlock(row, col));
+            }
+        }
+    }
+
+    /**
+     * Encodes a keyframe holding every cell of a grid.
+     *
+     * @param grid The grid to encode
+     * @return The encoded frame
+     */
+    public static byte[] encodeKeyframe(Grid grid) {
+        return encodeKeyframe(capture(grid), grid.getRows(), grid.getColumns());
+    }
+
+    /**
+     * Encodes a keyframe from captured cell codes.
+     *
+     * @param codes   The cell codes, row by row
+     * @param rows    The number of rows
+     * @param columns The number of columns
+     * @return The encoded frame
+     */
+    public static byte[] encodeKeyframe(byte[] codes, int rows, int columns) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(8 + codes.length);
+        int bits = bitsPerCode(codes);
+        writeHeader(out, KEYFRAME, rows, columns, bits);
+        BitPacker packer = new BitPacker(out, bits);
+        for (byte code : codes) {
+            packer.write(code & 0xFF);
+        }
+        packer.flush();
+        return out.toByteArray();
+    }
+
+    /**
+     * Encodes the changes between captured cell codes and the current state of
+     * a grid.
+     *
+     * @param before The cell codes captured before the change
+     * @param after  The grid after the change
+     * @return The encoded frame
+     */
+    public static byte[] encode(byte[] before, Grid after) {
+        return encode(before, capture(after), after.getRows(), after.getColumns());
+    }
+
+    /**
+     * Encodes the changes between two sets of captured cell codes.
+     *
+     * @param before  The cell codes before the change
+     * @param after   The cell codes after the change
+     * @param rows    The number of rows
+     * @param columns The number of columns
+     * @return The encoded frame
+     */
+    public static byte[] encode(byte[] before, byte[] after, int rows, int columns) {
+        int bits = bitsPerCode(after);
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        int[] kept = new int[rows];
+        int changedColumns = 0;
+        int lastColumn = -1;
+
+        for (int col = 0; col < columns; col++) {
+            int changedCells = 0;
+            for (int row = 0; row < rows; row++) {
+                if (before[row * columns + col] != after[row * columns + col]) {
+                    changedCells++;
+                }
+            }
+            if (changedCells == 0) {
+                continue;
+            }
+
+            // Match the new column from the bottom against the old one; whatever
+            // is left at the top once the old column runs out fell in as refills
+            int keptCount = 0;
+            int source = rows - 1;
+            int refills = rows;
+            for (int row = rows - 1; row >= 0; row--) {
+                byte code = after[row * columns + col];
+                while (source >= 0 && before[source * columns + col] != code) {
+                    source--;
+                }
+                if (source < 0) {
+                    break;
+                }
+                kept[keptCount++] = source--;
+                refills = row;
+            }
+
+            int gravityCost = 1 + refills * 2 + (refills * bits + 7) / 8;
+            int cellsCost = 1 + changedCells * 2;
+
+            writeVarint(body, col - lastColumn - 1);
+            lastColumn = col;
+            changedColumns++;
+
+            if (gravityCost < cellsCost) {
+                body.write(OP_GRAVITY);
+                writeVarint(body, refills);
+                // Removed rows are the old rows that were not kept, top to bottom
+                int next = keptCount - 1;
+                int previous = -1;
+                for (int row = 0; row < rows; row++) {
+                    if (next >= 0 && kept[next] == row) {
+                        next--;
+                        continue;
+                    }
+                    writeVarint(body, row - previous - 1);
+                    previous = row;
+                }
+                BitPacker packer = new BitPacker(body, bits);
+                for (int row = 0; row < refills; row++) {
+                    packer.write(after[row * columns + col] & 0xFF);
+                }
+                packer.flush();
+            } else {
+                body.write(OP_CELLS);
+                writeVarint(body, changedCells);
+                int previous = -1;
+                for (int row = 0; row < rows; row++) {
+                    byte code = after[row * columns + col];
+                    if (before[row * columns + col] != code) {
+                        writeVarint(body, row - previous - 1);
+                        body.write(code);
+                        previous = row;
+                    }
+                }
+            }
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream(8 + body.size());
+        writeHeader(out, DELTA, rows, columns, bits);
+        writeVarint(out, changedColumns);
+        out.writeBytes(body.toByteArray());
+        return out.toByteArray();
+    }
+
+    /**
+     * Applies an encoded frame to a grid.
+     *
+     * @param frame The frame, positioned at its first byte
+     * @param grid  The grid to update; must have the frame's dimensions
+     * @throws IllegalArgumentException If the frame is malformed or does not
+     *                                  fit the grid
+     */
+    public static void apply(ByteBuffer frame, Grid grid) {
+        try {
+            byte kind = frame.get();
+            int rows = readVarint(frame);
+            int columns = readVarint(frame);
+            int bits = frame.get() & 0xFF;
+            if (rows != grid.getRows() || columns != grid.getColumns() || bits < 1 || bits > 8) {
+                throw new IllegalArgumentException("Frame does not match a " + grid.getRows() + "x"
+                        + grid.getColumns() + " grid");
+            }
+            if (kind == KEYFRAME) {
+                BitUnpacker unpacker = new BitUnpacker(frame, bits);
+                for (int row = 0; row < rows; row++) {
+                    for (int col = 0; col < columns; col++) {
+                        setCell(grid, row, col, unpacker.read());
+                    }
+                }
+            } else if (kind == DELTA) {
+                applyDelta(frame, grid, bits);
+            } else {
+                throw new IllegalArgumentException("Unknown frame kind " + kind);
+            }
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("Truncated frame", e);
+        }
+    }
+
+    private static void applyDelta(ByteBuffer frame, Grid grid, int bits) {
+        int rows = grid.getRows();
+        int[] column = new int[rows];
+        boolean[] removed = new boolean[rows];
+        int changedColumns = readVarint(frame);
+        int col = -1;
+        for (int i = 0; i < changedColumns; i++) {
+            col += readVarint(frame) + 1;
+            if (col >= grid.getColumns()) {
+                throw new IllegalArgumentException("Column " + col + " is outside the grid");
+            }
+            byte op = frame.get();
+            if (op == OP_GRAVITY) {
+                int refills = readVarint(frame);
+                Arrays.fill(removed, false);
+                int row = -1;
+                for (int r = 0; r < refills; r++) {
+                    row += readVarint(frame) + 1;
+                    removed[checkRow(row, rows)] = true;
+                }
+                // Surviving cells drop to the bottom in their original order
+                int target = rows - 1;
+                for (int r = rows - 1; r >= 0; r--) {
+                    if (!removed[r]) {
+                        column[target--] = codeOf(grid.getBlock(r, col));
+                    }
+                }
+                BitUnpacker unpacker = new BitUnpacker(frame, bits);
+                for (int r = 0; r < refills; r++) {
+                    column[r] = unpacker.read();
+                }
+                for (int r = 0; r < rows; r++) {
+                    setCell(grid, r, col, column[r]);
+                }
+            } else if (op == OP_CELLS) {
+                int changed = readVarint(frame);
+                int row = -1;
+                for (int c = 0; c < changed; c++) {
+                    row += readVarint(frame) + 1;
+                    setCell(grid, checkRow(row, rows), col, frame.get() & 0xFF);
+                }
+            } else {
+                throw new IllegalArgumentException("Unknown column op " + op);
+            }
+        }
+    }
+
+    /**
+     * Gets the code of a block.
+     *
+     * @param block The block, or null for an empty cell
+     * @return The cell code
+     * @throws IllegalArgumentException If the block's color id does not fit
+     *                                  in a code
+     */
+    public static int codeOf(Block block) {
+        if (block == null) {
+            return Palette.EMPTY;
+        }
+        if (block.getColorId() > COLOR_MASK) {
+            throw new IllegalArgumentException("Color id " + block.getColorId() + " cannot be sent");
+        }
+        return block.getType().ordinal() << TYPE_SHIFT | block.getColorId();
+    }
+
+    private static void setCell(Grid grid, int row, int col, int code) {
+        if (codeOf(grid.getBlock(row, col)) == code) {
+            return;
+        }
+        grid.removeBlock(row, col);
+        if (code != Palette.EMPTY) {
+            int colorId = code & COLOR_MASK;
+            int type = code >>> TYPE_SHIFT;
+            if (colorId == Palette.EMPTY || colorId > Palette.STANDARD.size() || type >= TYPES.length) {
+                throw new IllegalArgumentException("Unknown cell code " + code);
+            }
+            grid.placeBlock(Palette.STANDARD.block(TYPES[type], colorId), row, col);
+        }
+    }
+
+    private static int checkRow(int row, int rows) {
+        if (row >= rows) {
+            throw new IllegalArgumentException("Row " + row + " is outside the grid");
+        }
+        return row;
+    }
+
+    /**
+     * Gets the fewest bits that hold every code in a frame, and at least
+     * enough for the standard palette's colors.
+     */
+    private static int bitsPerCode(byte[] codes) {
+        int all = Palette.STANDARD.size();
+        for (byte code : codes) {
+            all |= code & 0xFF;
+        }
+        return 32 - Integer.numberOfLeadingZeros(all);
+    }
+
+    private static void writeHeader(ByteArrayOutputStream out, byte kind, int rows, int columns, int bits) {
+        out.write(kind);
+        writeVarint(out, rows);
+        writeVarint(out, columns);
+        out.write(bits);
+    }
+
+    static void writeVarint(ByteArrayOutputStream out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    static int readVarint(ByteBuffer in) {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = in.get() & 0xFF;
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Malformed varint");
+    }
+
+    /**
+     * Writes fixed-width codes packed into bytes, most significant bit first.
+     */
+    private static class BitPacker {
+        private final ByteArrayOutputStream out;
+        private final int bits;
+        private int buffer = 0;
+        private int count = 0;
+
+        BitPacker(ByteArrayOutputStream out, int bits) {
+            this.out = out;
+            this.bits = bits;
+        }
+
+        void write(int code) {
+            buffer = (buffer << bits) | code;
+            count += bits;
+            while (count >= 8) {
+                count -= 8;
+                out.write(buffer >>> count);
+            }
+            buffer &= (1 << count) - 1;
+        }
+
+        void flush() {
+            if (count > 0) {
+                out.write(buffer << (8 - count));
+                buffer = 0;
+                count = 0;
+            }
+        }
+    }
+
+    /**
+     * Reads codes written by {@link BitPacker}.
+     */
+    private static class BitUnpacker {
+        private final ByteBuffer in;
+        private final int bits;
+        private int buffer = 0;
+        private int count = 0;
+
+        BitUnpacker(ByteBuffer in, int bits) {
+            this.in = in;
+            this.bits = bits;
+        }
+
+        int read() {
+            while (count < bits) {
+                buffer = (buffer << 8) | (in.get() & 0xFF);
+                count += 8;
+            }
+            count -= bits;
+            int code = (buffer >>> count) & ((1 << bits) - 1);
+            buffer &= (1 << count) - 1;
+            return code;
+        }
+    }
+}
@@ -1,119 +1,94 @@
 package tilematch;
 
-import java.awt.event.KeyAdapter;
 import java.awt.event.KeyEvent;
 
 /**
  * A simple launcher for the grid demonstration.
  */
-public class GridDemoLauncher {
-    private static final int WINDOW_WIDTH = 800;
-    private static final int WINDOW_HEIGHT = 600;
+public class GridDemoLauncher extends GameLauncher {
     private static final String WINDOW_TITLE = "Grid Demonstration";
 
-    private static Display display;
-    private static GridDemoState demoState;
-    private static boolean running;
-    private static long lastUpdateTime;
-
     /**
      * The main entry point for the application.
      *
      * @param args The command line arguments
      */
     public static void main(String[] args) {
-        initialize();
-        gameLoop();
+        GameSessionManager.launch(new GridDemoLauncher());
     }
 
     /**
      * Initializes the demo.
      */
-    private static void initialize() {
+    @Override
+    protected void initialize() {
         display = new Display(WINDOW_WIDTH, WINDOW_HEIGHT, WINDOW_TITLE);
 
         // Create a grid demo state with a 10x10 grid
-        demoState = new GridDemoState(10, 10);
+        gameState = new GridDemoState(10, 10);
 
         // Add key listener
-        display.addKeyListener(new KeyAdapter() {
-            @Override
-            public void keyPressed(KeyEvent e) {
-                handleKeyPress(e.getKeyCode());
-            }
-        });
+        display.addKeyListener(createKeyListener());
 
         running = true;
         lastUpdateTime = System.nanoTime();
     }
 
-    /**
-     * The main game loop.
-     */
-    private static void gameLoop() {
-        while (running) {
-            long currentTime = System.nanoTime();
-            double deltaTime = (currentTime - lastUpdateTime) / 1_000_000_000.0;
-            lastUpdateTime = currentTime;
-
-            // Update state
-            demoState.update(deltaTime);
-
-            // Render state
-            display.render(demoState);
-
-            // Sleep to limit frame rate
-            try {
-                Thread.sleep(16); // ~60 FPS
-            } catch (InterruptedException e) {
-                e.printStackTrace();
-            }
-        }
-    }
-
     /**
      * Handles key presses.
      *
      * @param keyCode The key code of the pressed key
      */
-    private static void handleKeyPress(int keyCode) {
+    @Override
+    protected void handleKeyPress(int keyCode) {
         switch (keyCode) {
             case KeyEvent.VK_UP:
-                demoState.handleInput("UP");
+                queueCommand(InputCommand.UP);
                 break;
             case KeyEvent.VK_DOWN:
-                demoState.handleInput("DOWN");
+                queueCommand(InputCommand.DOWN);
                 break;
             case KeyEvent.VK_LEFT:
-                demoState.handleInput("LEFT");
+                queueCommand(InputCommand.LEFT);
                 break;
             case KeyEvent.VK_RIGHT:
-                demoState.handleInput("RIGHT");
+                queueCommand(InputCommand.RIGHT);
                 break;
             case KeyEvent.VK_SPACE:
-                demoState.handleInput("SPACE");
+                queueCommand(InputCommand.SPACE);
                 break;
             case KeyEvent.VK_S:
-                demoState.handleInput("S");
+                queueCommand(InputCommand.SWAP_MODE);
                 break;
             case KeyEvent.VK_P:
-                demoState.handleInput("P");
+                queueCommand(InputCommand.POP);
                 break;
             case KeyEvent.VK_A:
-                demoState.handleInput("A");
+                queueCommand(InputCommand.CHECK_ALL);
                 break;
             case KeyEvent.VK_M:
-                demoState.handleInput("M");
+                queueCommand(InputCommand.MENU);
                 break;
             case KeyEvent.VK_R:
-                demoState.handleInput("R");
+                queueCommand(InputCommand.RANDOMIZE);
                 break;
             case KeyEvent.VK_C:
-                demoState.handleInput("C");
+                queueCommand(InputCommand.CLEAR);
+                break;
+            case KeyEvent.VK_F3:
+                queueCommand(InputCommand.METRICS);
+                break;
+            case KeyEvent.VK_EQUALS:
+            case KeyEvent.VK_ADD:
+                queueCommand(InputCommand.ZOOM_IN);
+                break;
+            case KeyEvent.VK_MINUS:
+            case KeyEvent.VK_SUBTRACT:
+                queueCommand(InputCommand.ZOOM_OUT);
                 break;
             case KeyEvent.VK_ESCAPE:
-                running = false;
+                stop();
                 break;
         }
     }
-}
\ No newline at end of file
+}
@@ -85,7 +85,7 @@ public class GridDemoState extends GameState {
                     // Otherwise, pick a random color
                     color = BLOCK_COLORS[RANDOM.nextInt(BLOCK_COLORS.length)];
                 }
-                Block block = new Block(row, col, Block.BlockType.STANDARD, color);
+                Block block = Block.of(Block.BlockType.STANDARD, color);
                 grid.placeBlock(block, row, col);
             }
         }
@@ -112,12 +112,12 @@ public class GridDemoState extends GameState {
                     if (validColors.isEmpty()) {
                         // If no valid colors, use any color (this should be rare)
                         Color color = BLOCK_COLORS[RANDOM.nextInt(BLOCK_COLORS.length)];
-                        Block block = new Block(row, col, Block.BlockType.STANDARD, color);
+                        Block block = Block.of(Block.BlockType.STANDARD, color);
                         grid.placeBlock(block, row, col);
                     } else {
                         // Choose a random color from valid colors
                         Color color = validColors.get(RANDOM.nextInt(validColors.size()));
-                        Block block = new Block(row, col, Block.BlockType.STANDARD, color);
+                        Block block = Block.of(Block.BlockType.STANDARD, color);
                         grid.placeBlock(block, row, col);
                     }
                 }
@@ -145,7 +145,7 @@ public class GridDemoState extends GameState {
                 // Use a checkerboard-like pattern with alternating colors
                 int colorIndex = (row + col) % BLOCK_COLORS.length;
                 Color color = BLOCK_COLORS[colorIndex];
-                Block block = new Block(row, col, Block.BlockType.STANDARD, color);
+                Block block = Block.of(Block.BlockType.STANDARD, color);
                 grid.placeBlock(block, row, col);
             }
         }
@@ -212,7 +212,7 @@ public class GridDemoState extends GameState {
             for (int col = 0; col < grid.getColumns(); col++) {
                 if (grid.isOccupied(row, col)) {
                     Block block = grid.getBlock(row, col);
-                    Set<Point> matches = grid.findConnectedBlocks(row, col, block.getColor());
+                    Set<Point> matches = grid.findConnectedBlocks(row, col, block.getColorId());
 
                     if (matches.size() >= MIN_BLOCKS_TO_POP) {
                         return true;
@@ -331,30 +331,14 @@ public class GridDemoState extends GameState {
             }
 
             // Perform the swap
-            Block block1 = grid.removeBlock(swapRow, swapCol);
-            Block block2 = grid.removeBlock(selectedRow, selectedCol);
-
-            // Update block positions
-            block1.setPosition(selectedRow, selectedCol);
-            block2.setPosition(swapRow, swapCol);
-
-            // Place blocks in swapped positions
-            grid.placeBlock(block1, selectedRow, selectedCol);
-            grid.placeBlock(block2, swapRow, swapCol);
+            grid.swapBlocks(swapRow, swapCol, selectedRow, selectedCol);
 
             // Check for matches after swap
             boolean matchFound = checkForMatches();
 
             if (!matchFound) {
                 // Swap back if no matches
-                block1 = grid.removeBlock(selectedRow, selectedCol);
-                block2 = grid.removeBlock(swapRow, swapCol);
-
-                block1.setPosition(swapRow, swapCol);
-                block2.setPosition(selectedRow, selectedCol);
-
-                grid.placeBlock(block1, swapRow, swapCol);
-                grid.placeBlock(block2, selectedRow, selectedCol);
+                grid.swapBlocks(swapRow, swapCol, selectedRow, selectedCol);
 
                 message = "No matches found. Swap reversed.";
             } else {
@@ -380,7 +364,7 @@ public class GridDemoState extends GameState {
             for (int col = 0; col < grid.getColumns(); col++) {
                 if (grid.isOccupied(row, col)) {
                     Block block = grid.getBlock(row, col);
-                    Set<Point> matches = grid.findConnectedBlocks(row, col, block.getColor());
+                    Set<Point> matches = grid.findConnectedBlocks(row, col, block.getColorId());
 
                     if (matches.size() >= MIN_BLOCKS_TO_POP) {
                         allMatches.addAll(matches);
@@ -446,7 +430,7 @@ public class GridDemoState extends GameState {
             message = "Removed block at (" + selectedRow + ", " + selectedCol + ")";
         } else {
             Color color = BLOCK_COLORS[RANDOM.nextInt(BLOCK_COLORS.length)];
-            Block block = new Block(selectedRow, selectedCol, Block.BlockType.STANDARD, color);
+            Block block = Block.of(Block.BlockType.STANDARD, color);
             grid.placeBlock(block, selectedRow, selectedCol);
             message = "Added block at (" + selectedRow + ", " + selectedCol + ")";
         }
@@ -463,10 +447,10 @@ public class GridDemoState extends GameState {
         }
 
         Block selectedBlock = grid.getBlock(selectedRow, selectedCol);
-        Color targetColor = selectedBlock.getColor();
+        int targetColorId = selectedBlock.getColorId();
 
         // Find all connected blocks of the same color using BFS
-        Set<Point> connectedBlocks = grid.findConnectedBlocks(selectedRow, selectedCol, targetColor);
+        Set<Point> connectedBlocks = grid.findConnectedBlocks(selectedRow, selectedCol, targetColorId);
 
         // Only pop if there are at least MIN_BLOCKS_TO_POP connected blocks
         if (connectedBlocks.size() >= MIN_BLOCKS_TO_POP) {
@@ -500,7 +484,7 @@ public class GridDemoState extends GameState {
             for (int row = 0; row < grid.getRows(); row++) {
                 if (!grid.isOccupied(row, col)) {
                     Color color = BLOCK_COLORS[RANDOM.nextInt(BLOCK_COLORS.length)];
-                    Block block = new Block(row, col, Block.BlockType.STANDARD, color);
+                    Block block = Block.of(Block.BlockType.STANDARD, color);
                     grid.placeBlock(block, row, col);
                 }
             }
@@ -537,7 +521,7 @@ public class GridDemoState extends GameState {
         g.setColor(Color.WHITE);
         g.setFont(new Font("Arial", Font.BOLD, 16));
 
-        int textX = grid.getXOffset() + grid.getColumns() * grid.getCellSize() + 20;
+        int textX = grid.getXOffset() + grid.getScreenWidth() + 20;
         int textY = grid.getYOffset() + 30;
 
         g.drawString("Grid Demo", textX, textY);
@@ -557,10 +541,10 @@ public class GridDemoState extends GameState {
         g.drawString("C: Clear grid", textX, textY + 280);
 
         // Draw selection highlight
-        if (selectedRow >= 0 && selectedCol >= 0) {
-            g.setColor(new Color(255, 255, 255, 100)); // Semi-transparent white
-            int x = grid.getXOffset() + selectedCol * grid.getCellSize();
-            int y = grid.getYOffset() + selectedRow * grid.getCellSize();
+        if (selectedRow >= 0 && selectedCol >= 0 && grid.isCellVisible(selectedRow, selectedCol)) {
+            g.setColor(SELECTION_FILL);
+            int x = grid.getCellX(selectedCol);
+            int y = grid.getCellY(selectedRow);
             g.fillRect(x, y, grid.getCellSize(), grid.getCellSize());
 
             g.setColor(Color.WHITE);
@@ -568,15 +552,20 @@ public class GridDemoState extends GameState {
         }
 
         // Draw swap selection highlight if in swap mode and first block is selected
-        if (swapMode && swapRow >= 0 && swapCol >= 0) {
-            g.setColor(new Color(255, 255, 0, 100)); // Semi-transparent yellow
-            int x = grid.getXOffset() + swapCol * grid.getCellSize();
-            int y = grid.getYOffset() + swapRow * grid.getCellSize();
+        if (swapMode && swapRow >= 0 && swapCol >= 0 && grid.isCellVisible(swapRow, swapCol)) {
+            g.setColor(SWAP_SELECTION_FILL);
+            int x = grid.getCellX(swapCol);
+            int y = grid.getCellY(swapRow);
             g.fillRect(x, y, grid.getCellSize(), grid.getCellSize());
 
             g.setColor(Color.YELLOW);
             g.drawRect(x, y, grid.getCellSize(), grid.getCellSize());
         }
+
+        // Draw the frame metrics below the grid, toggled with F3
+        if (metrics.isVisible()) {
+            metrics.renderOverlay(g, grid.getXOffset(), grid.getYOffset() + grid.getScreenHeight() + 10);
+        }
     }
 
     @Override
@@ -0,0 +1,120 @@
+package tilematch;
+
+/**
+ * The InputCommand class defines the compact integer commands that player
+ * input is encoded into before it reaches a game state.
+ * A packed command keeps the command id in the low byte and a repeat count in
+ * the remaining bits, so a run of identical key presses fits in a single int.
+ */
+public final class InputCommand {
+    public static final int NONE = 0;
+    public static final int UP = 1;
+    public static final int DOWN = 2;
+    public static final int LEFT = 3;
+    public static final int RIGHT = 4;
+    public static final int SPACE = 5;
+    public static final int POP = 6;
+    public static final int MENU = 7;
+    public static final int SWAP_MODE = 8;
+    public static final int RANDOMIZE = 9;
+    public static final int CLEAR = 10;
+    public static final int CHECK_ALL = 11;
+    public static final int PLAYER_TIMEOUT = 12;
+    public static final int GLOBAL_TIMEOUT = 13;
+    public static final int METRICS = 14;
+    public static final int ZOOM_IN = 15;
+    public static final int ZOOM_OUT = 16;
+
+    private static final int COMMAND_BITS = 8;
+    private static final int COMMAND_MASK = (1 << COMMAND_BITS) - 1;
+    private static final int MAX_REPEAT = Integer.MAX_VALUE >>> COMMAND_BITS;
+
+    // Input strings understood by GameState.handleInput, indexed by command id
+    private static final String[] INPUTS = {
+            "", "UP", "DOWN", "LEFT", "RIGHT", "SPACE", "P", "M", "S", "R", "C", "A",
+            "PLAYER_TIMEOUT", "GLOBAL_TIMEOUT", "METRICS", "ZOOM_IN", "ZOOM_OUT"
+    };
+
+    private InputCommand() {
+    }
+
+    /**
+     * Packs a command and a repeat count into a single int.
+     *
+     * @param command The command id
+     * @param repeat  How many times the command was issued in a row
+     * @return The packed command
+     */
+    public static int pack(int command, int repeat) {
+        return (Math.min(repeat, MAX_REPEAT) << COMMAND_BITS) | (command & COMMAND_MASK);
+    }
+
+    /**
+     * Gets the command id of a packed command.
+     *
+     * @param packed The packed command
+     * @return The command id
+     */
+    public static int command(int packed) {
+        return packed & COMMAND_MASK;
+    }
+
+    /**
+     * Gets the repeat count of a packed command.
+     *
+     * @param packed The packed command
+     * @return The repeat count, at least 1
+     */
+    public static int repeat(int packed) {
+        return Math.max(1, packed >>> COMMAND_BITS);
+    }
+
+    /**
+     * Checks if a command only moves the selection cursor, so consecutive
+     * copies of it can be merged.
+     *
+     * @param command The command id
+     * @return True if the command is an arrow key move, false otherwise
+     */
+    public static boolean isMove(int command) {
+        return command >= UP && command <= RIGHT;
+    }
+
+    /**
+     * Checks if a command zooms the camera in or out.
+     *
+     * @param command The command id
+     * @return True if the command is a zoom, false otherwise
+     */
+    public static boolean isZoom(int command) {
+        return command == ZOOM_IN || command == ZOOM_OUT;
+    }
+
+    /**
+     * Gets the input string for a command.
+     *
+     * @param command The command id
+     * @return The input string passed to GameState.handleInput
+     */
+    public static String toInput(int command) {
+        if (command > NONE && command < INPUTS.length) {
+            return INPUTS[command];
+        }
+        return INPUTS[NONE];
+    }
+
+    /**
+     * Gets the command for an input string.
+     *
+     * @param input The input string
+     * @return The command id, or NONE if the input is not recognized
+     */
+    public static int fromInput(String input) {
+        for (int command = 1; command < INPUTS.length; command++) {
+            if (INPUTS[command].equals(input)) {
+                return command;
+            }
+        }
+        return NONE;
+    }
+}
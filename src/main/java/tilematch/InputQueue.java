@@ -0,0 +1,91 @@
+package tilematch;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntConsumer;
+
+/**
+ * The InputQueue class is a bounded single-producer/single-consumer ring
+ * buffer of input commands.
+ * The event dispatch thread offers commands as key presses arrive and the game
+ * loop drains them once per tick. Neither side locks: each side owns one
+ * counter and publishes it with an ordered write.
+ */
+public class InputQueue {
+    private final int[] buffer;
+    private final int mask;
+    private final AtomicLong head = new AtomicLong(); // Next slot to read, written by the consumer
+    private final AtomicLong tail = new AtomicLong(); // Next slot to write, written by the producer
+
+    /**
+     * Creates a new InputQueue.
+     *
+     * @param capacity The maximum number of queued commands, rounded up to a
+     *                 power of two
+     */
+    public InputQueue(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        this.buffer = new int[size];
+        this.mask = size - 1;
+    }
+
+    /**
+     * Adds a command to the queue. Must only be called from the producer thread.
+     *
+     * @param command The command to add
+     * @return True if the command was queued, false if the queue is full
+     */
+    public boolean offer(int command) {
+        long t = tail.get();
+        if (t - head.get() >= buffer.length) {
+            return false;
+        }
+        buffer[(int) t & mask] = command;
+        tail.lazySet(t + 1);
+        return true;
+    }
+
+    /**
+     * Hands every queued command to the consumer. Consecutive identical arrow
+     * key moves are merged into one packed command with a repeat count. Must
+     * only be called from the consumer thread.
+     *
+     * @param consumer Receives each packed command (see {@link InputCommand})
+     * @return The number of commands removed from the queue
+     */
+    public int drain(IntConsumer consumer) {
+        long h = head.get();
+        long t = tail.get();
+        if (h == t) {
+            return 0;
+        }
+
+        int pending = InputCommand.NONE;
+        int repeat = 0;
+        for (long i = h; i < t; i++) {
+            int command = buffer[(int) i & mask];
+            if (command == pending && InputCommand.isMove(command)) {
+                repeat++;
+                continue;
+            }
+            if (pending != InputCommand.NONE) {
+                consumer.accept(InputCommand.pack(pending, repeat));
+            }
+            pending = command;
+            repeat = 1;
+        }
+        if (pending != InputCommand.NONE) {
+            consumer.accept(InputCommand.pack(pending, repeat));
+        }
+        head.lazySet(t);
+        return (int) (t - h);
+    }
+
+    /**
+     * Checks if the queue is empty.
+     *
+     * @return True if there are no queued commands, false otherwise
+     */
+    public boolean isEmpty() {
+        return head.get() == tail.get();
+    }
+}
@@ -0,0 +1,250 @@
+package tilematch;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+/**
+ * The Leaderboard class ranks players by their best score in one game type.
+ * Higher is better in Bejeweled and lower is better in SameGame (see
+ * {@link GameType#isLowerScoreBetter()}).
+ * Each player has one entry, their best score. Entries are kept in a
+ * concurrent skip list in rank order, and a per-player map finds a player's
+ * current entry. Entries are ordered by a single long key (the score, then the
+ * order in which players first appeared), so walking the list never has to
+ * compare names. A binary trie over the scores' bits, counting the entries
+ * below each node, answers rank queries without walking the list; its nodes
+ * are made as scores first reach them, so it grows with the scores in use.
+ * Submissions for different players never block each other, so many
+ * sessions can submit at once. Top-K costs O(log n + K) and a rank query
+ * costs O(log S) for any score, where S is the range of possible scores; ranks
+ * are exact whenever no submission is in progress.
+ */
+public class Leaderboard {
+    private static final int SCORE_BITS = Integer.SIZE - 1; // Scores are never negative
+    private static final Map<GameType, Leaderboard> SHARED = new EnumMap<>(GameType.class);
+
+    private final GameType gameType;
+    private final ConcurrentSkipListSet<Entry> ranking = new ConcurrentSkipListSet<>();
+    private final ConcurrentHashMap<String, Entry> bestByPlayer = new ConcurrentHashMap<>();
+    private final CountNode scoreCounts = new CountNode(); // Counts every entry
+    private final AtomicInteger nextPlayerId = new AtomicInteger();
+
+    /**
+     * Creates a new, empty Leaderboard.
+     *
+     * @param gameType The game whose scores are ranked
+     */
+    public Leaderboard(GameType gameType) {
+        this.gameType = gameType;
+    }
+
+    /**
+     * Gets the leaderboard shared by the game launchers for a game type,
+     * filled with the best scores from the shared stats store.
+     *
+     * @param gameType The game type
+     * @return The shared leaderboard
+     */
+    public static synchronized Leaderboard shared(GameType gameType) {
+        Leaderboard leaderboard = SHARED.get(gameType);
+        if (leaderboard == null) {
+            leaderboard = new Leaderboard(gameType);
+            for (PlayerStats stats : PlayerStatsStore.shared().getAllStats()) {
+                if (stats.getGamesPlayed(gameType) > 0) {
+                    leaderboard.submit(stats.getName(), stats.getBestScore(gameType));
+                }
+            }
+            SHARED.put(gameType, leaderboard);
+        }
+        return leaderboard;
+    }
+
+    /**
+     * Submits a score. It replaces the player's entry only if it beats their
+     * best. Safe to call from any thread.
+     *
+     * @param name  The player's name
+     * @param score The score
+     * @return True if this is the player's new best, false otherwise
+     */
+    public boolean submit(String name, int score) {
+        int clamped = Math.max(0, score);
+        boolean[] improved = new boolean[1];
+        // compute() serializes submissions for one player without blocking other players
+        bestByPlayer.compute(name, (player, best) -> {
+            int playerId = best != null ? best.playerId() : nextPlayerId.getAndIncrement();
+            Entry submitted = new Entry(name, clamped, keyOf(clamped, playerId));
+            if (best != null && submitted.key >= best.key) {
+                return best;
+            }
+            ranking.add(submitted);
+            addCount(submitted.score, 1);
+            if (best != null) {
+                ranking.remove(best);
+                addCount(best.score, -1);
+            }
+            improved[0] = true;
+            return submitted;
+        });
+        return improved[0];
+    }
+
+    /**
+     * Gets the best entries, best first.
+     *
+     * @param k The number of entries to return
+     * @return Up to k entries
+     */
+    public List<Entry> top(int k) {
+        List<Entry> top = new ArrayList<>(Math.max(0, Math.min(k, 1024)));
+        Iterator<Entry> entries = ranking.iterator();
+        while (top.size() < k && entries.hasNext()) {
+            top.add(entries.next());
+        }
+        return top;
+    }
+
+    /**
+     * Gets a player's rank. Players with equal scores share a rank.
+     *
+     * @param name The player's name
+     * @return 1 for the best score, or -1 if the player has no entry
+     */
+    public long rank(String name) {
+        Entry entry = bestByPlayer.get(name);
+        return entry == null ? -1 : 1 + countBetterThan(entry.score);
+    }
+
+    /**
+     * Gets a player's best entry.
+     *
+     * @param name The player's name
+     * @return The entry, or null if the player has no entry
+     */
+    public Entry get(String name) {
+        return bestByPlayer.get(name);
+    }
+
+    /**
+     * Gets the number of players on the leaderboard.
+     *
+     * @return The number of entries
+     */
+    public int size() {
+        return bestByPlayer.size();
+    }
+
+    public GameType getGameType() {
+        return gameType;
+    }
+
+    /**
+     * Counts the entries with a strictly better score. Walking down the
+     * score's bits, each step passes the sibling holding the scores that
+     * differ first at that bit, which are all better or all worse.
+     */
+    private long countBetterThan(int score) {
+        boolean lowerBetter = gameType.isLowerScoreBetter();
+        long better = 0;
+        CountNode node = scoreCounts;
+        for (int bit = SCORE_BITS - 1; bit >= 0 && node != null; bit--) {
+            boolean one = (score >>> bit & 1) != 0;
+            CountNode sibling = one ? node.zero : node.one;
+            if (sibling != null && one == lowerBetter) {
+                better += sibling.count;
+            }
+            node = one ? node.one : node.zero;
+        }
+        return better;
+    }
+
+    /**
+     * Orders entries best first: by score, then by player id so that every
+     * entry has a distinct key.
+     */
+    private long keyOf(int score, int playerId) {
+        long rankedScore = gameType.isLowerScoreBetter() ? score : Integer.MAX_VALUE - score;
+        return rankedScore << 32 | (playerId & 0xFFFFFFFFL);
+    }
+
+    private void addCount(int score, int delta) {
+        CountNode node = scoreCounts;
+        CountNode.COUNT.addAndGet(node, delta);
+        for (int bit = SCORE_BITS - 1; bit >= 0; bit--) {
+            node = node.child((score >>> bit & 1) != 0);
+            CountNode.COUNT.addAndGet(node, delta);
+        }
+    }
+
+    /**
+     * A node of the rank trie: the number of entries whose scores start with
+     * the node's bits, and the nodes for the next bit, made when first needed.
+     */
+    private static final class CountNode {
+        static final AtomicLongFieldUpdater<CountNode> COUNT =
+                AtomicLongFieldUpdater.newUpdater(CountNode.class, "count");
+        static final AtomicReferenceFieldUpdater<CountNode, CountNode> ZERO =
+                AtomicReferenceFieldUpdater.newUpdater(CountNode.class, CountNode.class, "zero");
+        static final AtomicReferenceFieldUpdater<CountNode, CountNode> ONE =
+                AtomicReferenceFieldUpdater.newUpdater(CountNode.class, CountNode.class, "one");
+
+        volatile long count;
+        volatile CountNode zero;
+        volatile CountNode one;
+
+        CountNode child(boolean isOne) {
+            CountNode child = isOne ? one : zero;
+            if (child == null) {
+                // Another submission may make it first; both then use the one that was set
+                (isOne ? ONE : ZERO).compareAndSet(this, null, new CountNode());
+                child = isOne ? one : zero;
+            }
+            return child;
+        }
+    }
+
+    /**
+     * One player's best score.
+     */
+    public static final class Entry implements Comparable<Entry> {
+        private final String name;
+        private final int score;
+        private final long key;
+
+        Entry(String name, int score, long key) {
+            this.name = name;
+            this.score = score;
+            this.key = key;
+        }
+
+        int playerId() {
+            return (int) key;
+        }
+
+        @Override
+        public int compareTo(Entry other) {
+            return Long.compare(key, other.key);
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getScore() {
+            return score;
+        }
+
+        @Override
+        public String toString() {
+            return name + ": " + score;
+        }
+    }
+}
@@ -0,0 +1,335 @@
+package tilematch;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * The LineMatcher class finds Bejeweled matches: horizontal and vertical runs
+ * of at least three blocks of one color. Runs that cross or touch end to end
+ * at a shared cell (T, L and + shapes) form one match; blocks that only sit
+ * next to a run, or bend round a corner without making a run of three, do not
+ * match.
+ *
+ * Runs are found with one sweep along the rows and one down the columns, both
+ * reading the grid's packed color rows in memory order. Cells join a match
+ * through a union-find over cell indices, in which each set is named by its
+ * lowest cell, so finding the matches costs time in proportion to the cells
+ * on the board and needs no hashing. Each match reports the longest run in
+ * each direction, which decides the special block it leaves.
+ *
+ * When the matched cells are already known, as from a
+ * {@link ParallelMatchScanner} on a large board, {@link #group(Grid, BitSet)}
+ * finds the runs among those cells alone, so grouping costs time in
+ * proportion to the matched cells rather than the board.
+ *
+ * A matcher is used by one game and is not thread-safe.
+ */
+public class LineMatcher {
+    private final int rows;
+    private final int columns;
+    private final int[] parent;
+    private final int[] groupOf; // Indexed by a set's root
+    private final int[] runStart; // Per column, during the vertical sweep
+    private final List<Match> matches = new ArrayList<>();
+    private int[] runs = new int[32]; // Start cell and signed length, in pairs
+    private int runCount;
+
+    /**
+     * The Match class is one match found by a LineMatcher: every cell of a
+     * run, or of runs that share cells.
+     */
+    public static final class Match {
+        private final int colorId;
+        private int[] cells = new int[4];
+        private int size;
+        private int longestHorizontalRun;
+        private int longestVerticalRun;
+
+        Match(int colorId) {
+            this.colorId = colorId;
+        }
+
+        /**
+         * Gets the color id of the match.
+         *
+         * @return The color id
+         */
+        public int getColorId() {
+            return colorId;
+        }
+
+        /**
+         * Gets the number of cells in the match.
+         *
+         * @return The number of cells
+         */
+        public int size() {
+            return size;
+        }
+
+        /**
+         * Gets the cells in the match.
+         *
+         * @return The cell indices, row * columns + column, in ascending order
+         */
+        public int[] getCells() {
+            return Arrays.copyOf(cells, size);
+        }
+
+        /**
+         * Gets the length of the longest horizontal run in the match.
+         *
+         * @return The run length, or 0 if the match is one vertical run
+         */
+        public int getLongestHorizontalRun() {
+            return longestHorizontalRun;
+        }
+
+        /**
+         * Gets the length of the longest vertical run in the match.
+         *
+         * @return The run length, or 0 if the match is one horizontal run
+         */
+        public int getLongestVerticalRun() {
+            return longestVerticalRun;
+        }
+
+        private void add(int cell) {
+            if (size == cells.length) {
+                cells = Arrays.copyOf(cells, size * 2);
+            }
+            cells[size++] = cell;
+        }
+    }
+
+    /**
+     * Creates a new LineMatcher for boards of the specified size.
+     *
+     * @param rows    The number of rows
+     * @param columns The number of columns
+     */
+    public LineMatcher(int rows, int columns) {
+        this.rows = rows;
+        this.columns = columns;
+        this.parent = new int[rows * columns];
+        this.groupOf = new int[rows * columns];
+        this.runStart = new int[columns];
+    }
+
+    /**
+     * Finds every match on the board. The matches themselves are then
+     * available from {@link #getMatches()} until the next call.
+     *
+     * @param grid The board; it is not changed
+     * @return The matched cells, indexed row * columns + column; the caller
+     *         may change the set
+     */
+    public BitSet find(Grid grid) {
+        BitSet matched = new BitSet(rows * columns);
+        matches.clear();
+        runCount = 0;
+        sweepRows(grid, matched);
+        sweepColumns(grid, matched);
+        collect(grid, matched);
+        return matched;
+    }
+
+    /**
+     * Groups cells already known to be matched into matches, as
+     * {@link #find(Grid)} would have found them. A run of three or more
+     * blocks lies wholly among the matched cells, so the runs are found by
+     * walking only those cells.
+     *
+     * @param grid    The board; it is not changed
+     * @param matched Every matched cell, indexed row * columns + column; it is
+     *                not changed, and is returned
+     * @return The matched cells
+     */
+    public BitSet group(Grid grid, BitSet matched) {
+        matches.clear();
+        runCount = 0;
+
+        // Horizontal runs are consecutive set bits of one color in a row
+        for (int cell = matched.nextSetBit(0); cell >= 0; ) {
+            byte id = colorAt(grid, cell);
+            int rowEnd = (cell / columns + 1) * columns;
+            int end = cell + 1;
+            while (end < rowEnd && matched.get(end) && colorAt(grid, end) == id) {
+                end++;
+            }
+            boolean run = end - cell >= TileMatchingGameEnvironment.MIN_BLOCKS_TO_POP;
+            for (int c = cell; c < end; c++) {
+                parent[c] = run ? cell : c;
+            }
+            if (run) {
+                addRun(cell, end - cell);
+            }
+            cell = matched.nextSetBit(end);
+        }
+
+        // A vertical run starts at a cell whose upper neighbor does not continue it
+        for (int cell = matched.nextSetBit(0); cell >= 0; cell = matched.nextSetBit(cell + 1)) {
+            byte id = colorAt(grid, cell);
+            if (cell >= columns && matched.get(cell - columns) && colorAt(grid, cell - columns) == id) {
+                continue;
+            }
+            int end = cell + columns;
+            while (end < rows * columns && matched.get(end) && colorAt(grid, end) == id) {
+                end += columns;
+            }
+            int length = (end - cell) / columns;
+            if (length >= TileMatchingGameEnvironment.MIN_BLOCKS_TO_POP) {
+                for (int c = cell + columns; c < end; c += columns) {
+                    union(cell, c);
+                }
+                addRun(cell, -length);
+            }
+        }
+        collect(grid, matched);
+        return matched;
+    }
+
+    /**
+     * Gets the matches found by the last call to {@link #find(Grid)} or
+     * {@link #group(Grid, BitSet)}.
+     *
+     * @return The matches, ordered by their lowest cell
+     */
+    public List<Match> getMatches() {
+        return matches;
+    }
+
+    /**
+     * Gets the match a cell belongs to.
+     *
+     * @param matched The set returned by the last call to {@link #find(Grid)}
+     *                or {@link #group(Grid, BitSet)}
+     * @param row     The cell's row
+     * @param col     The cell's column
+     * @return The match, or null if the cell is not matched
+     */
+    public Match matchAt(BitSet matched, int row, int col) {
+        if (row < 0 || row >= rows || col < 0 || col >= columns || !matched.get(row * columns + col)) {
+            return null;
+        }
+        return matches.get(groupOf[root(row * columns + col)]);
+    }
+
+    /**
+     * Builds the matches from the sets and runs the sweeps left.
+     */
+    private void collect(Grid grid, BitSet matched) {
+        // Roots are the lowest cells of their sets, so each is reached first
+        for (int cell = matched.nextSetBit(0); cell >= 0; cell = matched.nextSetBit(cell + 1)) {
+            int root = root(cell);
+            if (root == cell) {
+                groupOf[cell] = matches.size();
+                matches.add(new Match(grid.getColorId(cell / columns, cell % columns)));
+            }
+            matches.get(groupOf[root]).add(cell);
+        }
+        for (int i = 0; i < runCount; i++) {
+            Match match = matches.get(groupOf[root(runs[2 * i])]);
+            int length = runs[2 * i + 1];
+            if (length > 0) {
+                match.longestHorizontalRun = Math.max(match.longestHorizontalRun, length);
+            } else {
+                match.longestVerticalRun = Math.max(match.longestVerticalRun, -length);
+            }
+        }
+    }
+
+    private byte colorAt(Grid grid, int cell) {
+        return grid.colorRow(cell / columns)[cell % columns];
+    }
+
+    /**
+     * Finds the horizontal runs. Each run becomes a set rooted at its first
+     * cell; no cell has been matched yet, so no sets need merging.
+     */
+    private void sweepRows(Grid grid, BitSet matched) {
+        for (int row = 0; row < rows; row++) {
+            byte[] ids = grid.colorRow(row);
+            int base = row * columns;
+            int start = 0;
+            for (int col = 1; col <= columns; col++) {
+                if (col < columns && ids[col] == ids[start]) {
+                    continue;
+                }
+                if (col - start >= TileMatchingGameEnvironment.MIN_BLOCKS_TO_POP && ids[start] != Palette.EMPTY) {
+                    for (int cell = base + start; cell < base + col; cell++) {
+                        parent[cell] = base + start;
+                    }
+                    matched.set(base + start, base + col);
+                    addRun(base + start, col - start);
+                }
+                start = col;
+            }
+        }
+    }
+
+    /**
+     * Finds the vertical runs, sweeping row by row and keeping where the
+     * current run in each column started. Cells already in a horizontal run
+     * merge its set with the vertical run's.
+     */
+    private void sweepColumns(Grid grid, BitSet matched) {
+        Arrays.fill(runStart, 0);
+        for (int row = 1; row <= rows; row++) {
+            byte[] ids = row < rows ? grid.colorRow(row) : null;
+            for (int col = 0; col < columns; col++) {
+                int start = runStart[col];
+                byte id = grid.colorRow(start)[col];
+                if (ids != null && ids[col] == id) {
+                    continue;
+                }
+                if (row - start >= TileMatchingGameEnvironment.MIN_BLOCKS_TO_POP && id != Palette.EMPTY) {
+                    int first = start * columns + col;
+                    for (int r = start; r < row; r++) {
+                        int cell = r * columns + col;
+                        if (!matched.get(cell)) {
+                            parent[cell] = cell;
+                            matched.set(cell);
+                        }
+                        union(first, cell);
+                    }
+                    addRun(first, start - row);
+                }
+                runStart[col] = row;
+            }
+        }
+    }
+
+    private void addRun(int start, int signedLength) {
+        if (2 * runCount == runs.length) {
+            runs = Arrays.copyOf(runs, runs.length * 2);
+        }
+        runs[2 * runCount] = start;
+        runs[2 * runCount + 1] = signedLength;
+        runCount++;
+    }
+
+    /**
+     * Joins two sets under the lower of their roots.
+     */
+    private void union(int a, int b) {
+        int rootA = root(a);
+        int rootB = root(b);
+        if (rootA < rootB) {
+            parent[rootB] = rootA;
+        } else if (rootB < rootA) {
+            parent[rootA] = rootB;
+        }
+    }
+
+    private int root(int cell) {
+        while (parent[cell] != cell) {
+            // Path halving keeps later lookups short
+            parent[cell] = parent[parent[cell]];
+            cell = parent[cell];
+        }
+        return cell;
+    }
+}
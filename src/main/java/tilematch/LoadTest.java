@@ -0,0 +1,413 @@
+package tilematch;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+
+import com.sun.management.GarbageCollectionNotificationInfo;
+import com.sun.management.ThreadMXBean;
+
+/**
+ * The LoadTest class measures how fast the rules engine runs without a
+ * display. It starts a number of headless Bejeweled and SameGame sessions,
+ * drives each with a bot through {@link GameState#handleInput(String)}, and
+ * after a warmup reports moves and cascades per second, the allocation rate,
+ * GC pauses and latency percentiles for each kind of input.
+ *
+ * Sessions are split evenly between worker threads and each thread plays its
+ * sessions in turn, so running with one thread gives the throughput of one
+ * core. A session whose game ends is replaced by a new one.
+ *
+ * Usage: {@code java -cp TMGE.jar tilematch.LoadTest [--sessions 64]
+ * [--threads N] [--seconds 30] [--warmup 5] [--game both|bejeweled|samegame]
+ * [--rows 10] [--columns 10] [--palette 8] [--bot random|scripted] [--seed 1]}
+ */
+public class LoadTest {
+    private static final String[] OPERATIONS = { "UP", "DOWN", "LEFT", "RIGHT", "SPACE", "P", "update" };
+    private static final int UP = 0;
+    private static final int DOWN = 1;
+    private static final int LEFT = 2;
+    private static final int RIGHT = 3;
+    private static final int SPACE = 4;
+    private static final int POP = 5;
+    private static final int UPDATE = 6;
+
+    private int sessions = 64;
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private int seconds = 30;
+    private int warmupSeconds = 5;
+    private GameType[] gameTypes = GameType.values();
+    private int rows = 10;
+    private int columns = 10;
+    private Palette palette = Palette.STANDARD;
+    private boolean scripted = false;
+    private long seed = 1;
+
+    // GC pauses while measuring, written by the notification thread
+    private final LatencyHistogram gcPauses = new LatencyHistogram("GC pause");
+    private volatile boolean measuringGc = false;
+    private volatile boolean stopping = false;
+
+    public static void main(String[] args) throws InterruptedException {
+        System.setProperty("java.awt.headless", "true");
+        LoadTest loadTest = new LoadTest();
+        try {
+            for (int i = 0; i < args.length; i += 2) {
+                String value = i + 1 < args.length ? args[i + 1] : "";
+                switch (args[i]) {
+                    case "--sessions":
+                        loadTest.sessions = Integer.parseInt(value);
+                        break;
+                    case "--threads":
+                        loadTest.threads = Integer.parseInt(value);
+                        break;
+                    case "--seconds":
+                        loadTest.seconds = Integer.parseInt(value);
+                        break;
+                    case "--warmup":
+                        loadTest.warmupSeconds = Integer.parseInt(value);
+                        break;
+                    case "--game":
+                        loadTest.gameTypes = value.equals("both") ? GameType.values()
+                                : new GameType[] { GameType.valueOf(value.toUpperCase().replace("SAMEGAME", "SAME_GAME")) };
+                        break;
+                    case "--rows":
+                        loadTest.rows = Integer.parseInt(value);
+                        break;
+                    case "--columns":
+                        loadTest.columns = Integer.parseInt(value);
+                        break;
+                    case "--palette":
+                        loadTest.palette = Palette.ofSize(Integer.parseInt(value));
+                        break;
+                    case "--bot":
+                        loadTest.scripted = value.equals("scripted");
+                        break;
+                    case "--seed":
+                        loadTest.seed = Long.parseLong(value);
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown option " + args[i]);
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println("Usage: LoadTest [--sessions n] [--threads n] [--seconds n] [--warmup n]"
+                    + " [--game both|bejeweled|samegame] [--rows n] [--columns n] [--palette n] [--bot random|scripted] [--seed n]");
+            return;
+        }
+        loadTest.run();
+    }
+
+    /**
+     * Runs the load test and prints the report.
+     *
+     * @throws InterruptedException If interrupted while waiting for the workers
+     */
+    public void run() throws InterruptedException {
+        int workerCount = Math.max(1, Math.min(threads, sessions));
+        long measureStart = System.nanoTime() + warmupSeconds * 1_000_000_000L;
+        long measureEnd = measureStart + seconds * 1_000_000_000L;
+
+        List<Worker> workers = new ArrayList<>();
+        for (int w = 0; w < workerCount; w++) {
+            workers.add(new Worker(w, workerCount, measureStart));
+        }
+        System.out.printf("Load test: %d sessions of %s, %dx%d, %d colors, %s bots, %d thread%s, %d s after %d s"
+                + " warmup%n", sessions, gameTypes.length == 1 ? gameTypes[0].getDisplayName() : "both games", rows,
+                columns, palette.size(), scripted ? "scripted" : "random", workerCount, workerCount == 1 ? "" : "s", seconds, warmupSeconds);
+
+        ThreadMXBean threadBean = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+        listenForGcPauses();
+        for (Worker worker : workers) {
+            worker.thread.start();
+        }
+
+        sleepUntil(measureStart);
+        long[] allocatedBefore = allocatedBytes(threadBean, workers);
+        long[] gcBefore = gcTotals();
+        measuringGc = true;
+        sleepUntil(measureEnd);
+        long[] allocatedAfter = allocatedBytes(threadBean, workers);
+        long[] gcAfter = gcTotals();
+        measuringGc = false;
+        // Workers run until sampled, since a finished thread reports no allocation
+        stopping = true;
+        for (Worker worker : workers) {
+            worker.thread.join();
+        }
+
+        report(workers, allocatedAfter, allocatedBefore, gcAfter, gcBefore);
+    }
+
+    private void report(List<Worker> workers, long[] allocatedAfter, long[] allocatedBefore, long[] gcAfter,
+            long[] gcBefore) {
+        LatencyHistogram[] latencies = new LatencyHistogram[OPERATIONS.length];
+        for (int op = 0; op < OPERATIONS.length; op++) {
+            latencies[op] = new LatencyHistogram(OPERATIONS[op]);
+        }
+        long inputs = 0;
+        long moves = 0;
+        long cascades = 0;
+        long games = 0;
+        long allocated = 0;
+        for (Worker worker : workers) {
+            for (int op = 0; op < OPERATIONS.length; op++) {
+                latencies[op].add(worker.latencies[op]);
+            }
+            inputs += worker.inputs;
+            moves += worker.moves;
+            cascades += worker.cascades;
+            games += worker.games;
+            allocated += allocatedAfter[worker.index] - allocatedBefore[worker.index];
+        }
+
+        System.out.printf("Moves:       %,12.0f/s  (%,.0f/s per thread)%n", (double) moves / seconds,
+                (double) moves / seconds / workers.size());
+        System.out.printf("Cascades:    %,12.0f/s%n", (double) cascades / seconds);
+        System.out.printf("Inputs:      %,12.0f/s%n", (double) inputs / seconds);
+        System.out.printf("Games ended: %,12d%n", games);
+        if (allocatedBefore[0] >= 0) {
+            System.out.printf("Allocation:  %,12.1f MB/s  (%,.0f bytes per input)%n",
+                    allocated / 1_000_000.0 / seconds, inputs == 0 ? 0.0 : (double) allocated / inputs);
+        } else {
+            System.out.println("Allocation:  not supported by this JVM");
+        }
+        System.out.printf("GC:          %,12d collections, %,d ms total", gcAfter[0] - gcBefore[0],
+                gcAfter[1] - gcBefore[1]);
+        synchronized (gcPauses) {
+            System.out.printf(", pause p50 %.2f ms, p99 %.2f ms, max %.2f ms%n",
+                    gcPauses.getPercentile(50) / 1e6, gcPauses.getPercentile(99) / 1e6, gcPauses.getMax() / 1e6);
+        }
+
+        System.out.printf("%n%-8s %12s %9s %9s %9s %9s%n", "us", "count", "p50", "p99", "p99.9", "max");
+        for (LatencyHistogram histogram : latencies) {
+            if (histogram.getCount() > 0) {
+                System.out.printf("%-8s %,12d %9.2f %9.2f %9.2f %9.2f%n", histogram.getName(), histogram.getCount(),
+                        histogram.getPercentile(50) / 1e3, histogram.getPercentile(99) / 1e3,
+                        histogram.getPercentile(99.9) / 1e3, histogram.getMax() / 1e3);
+            }
+        }
+    }
+
+    /**
+     * Records the duration of every GC that finishes while measuring.
+     */
+    private void listenForGcPauses() {
+        NotificationListener listener = (Notification notification, Object handback) -> {
+            if (measuringGc && notification.getType().equals(GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION)) {
+                GarbageCollectionNotificationInfo info = GarbageCollectionNotificationInfo
+                        .from((CompositeData) notification.getUserData());
+                synchronized (gcPauses) {
+                    gcPauses.record(info.getGcInfo().getDuration() * 1_000_000L);
+                }
+            }
+        };
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            if (gc instanceof NotificationEmitter) {
+                ((NotificationEmitter) gc).addNotificationListener(listener, null, null);
+            }
+        }
+    }
+
+    /**
+     * Gets the number of collections and their total time in milliseconds.
+     */
+    private static long[] gcTotals() {
+        long[] totals = new long[2];
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            totals[0] += Math.max(0, gc.getCollectionCount());
+            totals[1] += Math.max(0, gc.getCollectionTime());
+        }
+        return totals;
+    }
+
+    /**
+     * Gets the bytes allocated so far by each worker, or -1 for each if the
+     * JVM does not track allocation.
+     */
+    private static long[] allocatedBytes(ThreadMXBean threadBean, List<Worker> workers) {
+        long[] ids = new long[workers.size()];
+        for (Worker worker : workers) {
+            ids[worker.index] = worker.thread.getId();
+        }
+        if (!threadBean.isThreadAllocatedMemorySupported() || !threadBean.isThreadAllocatedMemoryEnabled()) {
+            long[] unsupported = new long[ids.length];
+            Arrays.fill(unsupported, -1);
+            return unsupported;
+        }
+        return threadBean.getThreadAllocatedBytes(ids);
+    }
+
+    private static void sleepUntil(long deadline) throws InterruptedException {
+        long remaining;
+        while ((remaining = deadline - System.nanoTime()) > 0) {
+            Thread.sleep(Math.max(1, remaining / 1_000_000L));
+        }
+    }
+
+    /**
+     * One worker thread and the sessions it plays.
+     */
+    private class Worker implements Runnable {
+        private final int index;
+        private final Thread thread;
+        private final long measureStart;
+        private final List<Player> players = new ArrayList<>();
+        private final LatencyHistogram[] latencies = new LatencyHistogram[OPERATIONS.length];
+        private long inputs;
+        private long moves;
+        private long cascades;
+        private long games;
+
+        Worker(int index, int workerCount, long measureStart) {
+            this.index = index;
+            this.measureStart = measureStart;
+            for (int op = 0; op < OPERATIONS.length; op++) {
+                latencies[op] = new LatencyHistogram(OPERATIONS[op]);
+            }
+            for (int session = index; session < sessions; session += workerCount) {
+                players.add(new Player(gameTypes[session % gameTypes.length], seed + session));
+            }
+            this.thread = new Thread(this, "load-test-" + index);
+        }
+
+        @Override
+        public void run() {
+            boolean measuring = false;
+            try {
+                while (!stopping) {
+                    for (Player player : players) {
+                        player.step(this);
+                    }
+                    if (!measuring && System.nanoTime() >= measureStart) {
+                        measuring = true;
+                        for (LatencyHistogram histogram : latencies) {
+                            histogram.reset();
+                        }
+                        inputs = 0;
+                        moves = 0;
+                        cascades = 0;
+                        games = 0;
+                    }
+                }
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            } finally {
+                for (Player player : players) {
+                    player.state.dispose();
+                }
+            }
+        }
+    }
+
+    /**
+     * One session and the bot playing it. Both players' turns are played by
+     * the same bot.
+     */
+    private class Player {
+        private final GameType gameType;
+        private final Random random;
+        private TileMatchingGameEnvironment state;
+        private int rowStep = 1;
+        private int colStep = 1;
+        private int scriptStep = 0;
+
+        Player(GameType gameType, long seed) {
+            this.gameType = gameType;
+            this.random = new Random(seed);
+            newGame();
+        }
+
+        private void newGame() {
+            state = (TileMatchingGameEnvironment) gameType.createState(rows, columns, random.nextLong(), palette);
+            state.setPlayerNames("Bot 1", "Bot 2");
+            scriptStep = 0;
+        }
+
+        /**
+         * Sends the bot's next input and, after a move, updates the game. A
+         * Bejeweled move is a swap that was tried, kept or reversed, which
+         * takes two presses of the action key; a SameGame move is a pop.
+         * Selecting the first block of a swap, and pops of a lone block, are
+         * not moves.
+         */
+        void step(Worker worker) {
+            int op = scripted ? nextScripted() : nextRandom();
+            long cascadesBefore = state.getCascadeLevels();
+            boolean firstSelected = state.swapRow != -1;
+            long start = System.nanoTime();
+            state.handleInput(OPERATIONS[op]);
+            worker.latencies[op].recordSince(start);
+            worker.inputs++;
+            boolean moved = op == SPACE ? firstSelected && state.swapRow == -1
+                    : op == POP && state.getCascadeLevels() != cascadesBefore;
+            if (!moved) {
+                return;
+            }
+            worker.moves++;
+            worker.cascades += state.getCascadeLevels() - cascadesBefore;
+
+            start = System.nanoTime();
+            state.update(0);
+            worker.latencies[UPDATE].recordSince(start);
+            if (state.isGameOver()) {
+                worker.games++;
+                state.dispose();
+                newGame();
+            }
+        }
+
+        private int nextRandom() {
+            if (random.nextInt(10) < 4) {
+                return gameType == GameType.SAME_GAME ? POP : SPACE;
+            }
+            return random.nextInt(4);
+        }
+
+        /**
+         * Sweeps the board in a snake. Bejeweled tries swapping each block
+         * with its neighbour in the direction of the sweep; SameGame pops
+         * every block it passes.
+         */
+        private int nextScripted() {
+            boolean atRowEnd = state.selectedCol + colStep < 0 || state.selectedCol + colStep >= columns;
+            if (gameType == GameType.SAME_GAME) {
+                scriptStep = 1 - scriptStep;
+                if (scriptStep == 1) {
+                    return POP;
+                }
+                return atRowEnd ? turn() : sweep();
+            }
+            if (scriptStep == 0 && atRowEnd) {
+                return turn();
+            }
+            // Select the block, move to its neighbour, then swap them
+            scriptStep = (scriptStep + 1) % 3;
+            return scriptStep == 2 ? sweep() : SPACE;
+        }
+
+        private int sweep() {
+            return colStep > 0 ? RIGHT : LEFT;
+        }
+
+        /**
+         * Moves to the next row and reverses the sweep.
+         */
+        private int turn() {
+            colStep = -colStep;
+            if (state.selectedRow + rowStep < 0 || state.selectedRow + rowStep >= rows) {
+                rowStep = -rowStep;
+            }
+            return rowStep > 0 ? DOWN : UP;
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package tilematch;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+
+/**
+ * The MatchClient class is a simple blocking client for {@link MatchServer}.
+ * It is meant for bots, load tests and checking a server over loopback, so it
+ * exposes the raw protocol messages instead of a game state.
+ */
+public class MatchClient implements AutoCloseable {
+    private final SocketChannel channel;
+    private final ByteBuffer header = ByteBuffer.allocate(MatchProtocol.HEADER_SIZE);
+
+    /**
+     * Connects to a match server.
+     *
+     * @param host The server host
+     * @param port The server port
+     * @throws IOException If the connection fails
+     */
+    public MatchClient(String host, int port) throws IOException {
+        channel = SocketChannel.open(new InetSocketAddress(host, port));
+        channel.socket().setTcpNoDelay(true);
+    }
+
+    /**
+     * Asks the server for a match.
+     *
+     * @param gameType The game to play
+     * @param rows     The number of rows in the grid
+     * @param columns  The number of columns in the grid
+     * @param name     The player's name
+     * @throws IOException              If the message cannot be sent
+     * @throws IllegalArgumentException If the name is too long for the server
+     *                                  to accept
+     */
+    public void hello(GameType gameType, int rows, int columns, String name) throws IOException {
+        ByteBuffer message = MatchProtocol.messageWithText(MatchProtocol.HELLO, 6, name);
+        if (message.limit() - MatchProtocol.HEADER_SIZE > MatchProtocol.MAX_CLIENT_MESSAGE_SIZE) {
+            throw new IllegalArgumentException("Player name is too long");
+        }
+        message.put((byte) MatchProtocol.VERSION);
+        message.put((byte) gameType.ordinal());
+        message.putShort((short) rows);
+        message.putShort((short) columns);
+        message.position(message.limit());
+        send(message);
+    }
+
+    /**
+     * Asks to watch a running match. The server answers with a GRID message,
+     * then forwards everything the players receive.
+     *
+     * @param matchId The id of the match, as sent in MATCH_START
+     * @throws IOException If the message cannot be sent
+     */
+    public void watch(int matchId) throws IOException {
+        ByteBuffer message = MatchProtocol.message(MatchProtocol.WATCH, 5);
+        message.put((byte) MatchProtocol.VERSION);
+        message.putInt(matchId);
+        send(message);
+    }
+
+    /**
+     * Sends a move. Bejeweled swaps the two cells; SameGame pops the group at
+     * the first cell.
+     *
+     * @param row1 The row of the first cell
+     * @param col1 The column of the first cell
+     * @param row2 The row of the second cell
+     * @param col2 The column of the second cell
+     * @throws IOException If the message cannot be sent
+     */
+    public void move(int row1, int col1, int row2, int col2) throws IOException {
+        ByteBuffer message = MatchProtocol.message(MatchProtocol.MOVE, 8);
+        message.putShort((short) row1);
+        message.putShort((short) col1);
+        message.putShort((short) row2);
+        message.putShort((short) col2);
+        send(message);
+    }
+
+    /**
+     * Blocks until the next message arrives.
+     *
+     * @return A buffer whose first byte is the message type, followed by the
+     *         payload
+     * @throws IOException If the connection fails or is closed
+     */
+    public ByteBuffer receive() throws IOException {
+        header.clear();
+        readFully(header);
+        header.flip();
+        int length = header.getInt();
+        if (length < 1 || length > MatchProtocol.MAX_MESSAGE_SIZE) {
+            throw new IOException("Bad message length " + length);
+        }
+        ByteBuffer message = ByteBuffer.allocate(length);
+        readFully(message);
+        message.flip();
+        return message;
+    }
+
+    /**
+     * Blocks until a message of the specified type arrives, skipping others.
+     *
+     * @param type The message type to wait for
+     * @return The payload of the message
+     * @throws IOException If the connection fails or is closed
+     */
+    public ByteBuffer receive(byte type) throws IOException {
+        while (true) {
+            ByteBuffer message = receive();
+            if (message.get() == type) {
+                return message.slice();
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private void send(ByteBuffer message) throws IOException {
+        message.flip();
+        while (message.hasRemaining()) {
+            channel.write(message);
+        }
+    }
+
+    private void readFully(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                throw new IOException("Connection closed by server");
+            }
+        }
+    }
+}
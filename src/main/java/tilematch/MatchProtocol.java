@@ -0,0 +1,134 @@
+package tilematch;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The MatchProtocol class defines the binary messages exchanged between
+ * {@link MatchServer} and {@link MatchClient}.
+ * Every message is framed as a 4-byte big-endian length followed by a 1-byte
+ * message type and the payload. The length counts the type byte and payload.
+ * Coordinates are unsigned 16-bit values. Boards are sent as {@link GridDelta}
+ * frames: a keyframe when a match starts, then only the changes after each
+ * move. A client states the {@link #VERSION} it speaks when it joins or
+ * watches, and the server turns away clients that speak another.
+ */
+public final class MatchProtocol {
+    public static final int VERSION = 2; // 2: a cell code carries its block type as well as its color
+
+    // Client to server
+    /** Join a match: u8 version, u8 game type, u16 rows, u16 columns, UTF-8 player name. */
+    public static final byte HELLO = 0x01;
+    /** Make a move: u16 row1, u16 col1, u16 row2, u16 col2 (SameGame ignores the second cell). */
+    public static final byte MOVE = 0x02;
+    /** Watch a match as a spectator: u8 version, u32 match id. A GRID message follows, then the players' messages. */
+    public static final byte WATCH = 0x03;
+
+    // Server to client
+    /** A match started: u32 match id, u8 your seat, UTF-8 opponent name. A GRID message follows. */
+    public static final byte MATCH_START = (byte) 0x81;
+    /** Full board: u8 active seat, i32 score 0, i32 score 1, GridDelta keyframe. */
+    public static final byte GRID = (byte) 0x82;
+    /** A move was refused: u8 reason. */
+    public static final byte REJECT = (byte) 0x83;
+    /** The game ended: u8 winning seat, or TIE. */
+    public static final byte GAME_OVER = (byte) 0x84;
+    /** The opponent disconnected and the match was closed. No payload. */
+    public static final byte OPPONENT_LEFT = (byte) 0x85;
+    /** Board changes: u8 active seat, i32 score 0, i32 score 1, GridDelta delta frame. */
+    public static final byte DELTA = (byte) 0x86;
+
+    // Reject reasons
+    public static final byte NOT_YOUR_TURN = 1;
+    public static final byte INVALID_MOVE = 2;
+    public static final byte NO_MATCH = 3;
+    public static final byte UNKNOWN_MATCH = 4;
+    public static final byte UNSUPPORTED_VERSION = 5;
+
+    public static final byte TIE = (byte) 0xFF;
+
+    public static final int HEADER_SIZE = 4;
+    // Server to client; keyframes of large boards need the room
+    public static final int MAX_MESSAGE_SIZE = 1 << 22;
+    // Client to server; the largest is HELLO, whose player name takes up most of it
+    public static final int MAX_CLIENT_MESSAGE_SIZE = 256;
+
+    private MatchProtocol() {
+    }
+
+    /**
+     * Creates a framed message with room for the payload. The caller writes the
+     * payload and flips the buffer.
+     *
+     * @param type        The message type
+     * @param payloadSize The payload size in bytes
+     * @return A buffer positioned after the type byte
+     */
+    public static ByteBuffer message(byte type, int payloadSize) {
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + 1 + payloadSize);
+        buffer.putInt(1 + payloadSize);
+        buffer.put(type);
+        return buffer;
+    }
+
+    /**
+     * Creates a framed message with a UTF-8 string appended to a fixed payload.
+     *
+     * @param type      The message type
+     * @param fixedSize The size of the payload before the string
+     * @param text      The string to append after the fixed payload
+     * @return A buffer positioned after the type byte
+     */
+    public static ByteBuffer messageWithText(byte type, int fixedSize, String text) {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buffer = message(type, fixedSize + bytes.length);
+        buffer.position(buffer.position() + fixedSize);
+        buffer.put(bytes);
+        buffer.position(HEADER_SIZE + 1);
+        return buffer;
+    }
+
+    /**
+     * Reads the rest of a payload as a UTF-8 string.
+     *
+     * @param payload The payload positioned at the string
+     * @return The string
+     */
+    public static String readText(ByteBuffer payload) {
+        byte[] bytes = new byte[payload.remaining()];
+        payload.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Encodes the full board of a game state as a GRID message.
+     *
+     * @param state The game state
+     * @return The framed message, ready to send
+     */
+    public static ByteBuffer encodeGrid(GameState state) {
+        return encodeBoard(GRID, state, GridDelta.encodeKeyframe(state.getGrid()));
+    }
+
+    /**
+     * Encodes the changes to a game state's board as a DELTA message.
+     *
+     * @param state  The game state
+     * @param before The cell codes last sent to the clients (see
+     *               {@link GridDelta#capture(Grid)})
+     * @return The framed message, ready to send
+     */
+    public static ByteBuffer encodeDelta(GameState state, byte[] before) {
+        return encodeBoard(DELTA, state, GridDelta.encode(before, state.getGrid()));
+    }
+
+    private static ByteBuffer encodeBoard(byte type, GameState state, byte[] frame) {
+        ByteBuffer buffer = message(type, 1 + 4 + 4 + frame.length);
+        buffer.put((byte) state.getCurrPlayerIndex());
+        buffer.putInt(state.getPlayerScore(0));
+        buffer.putInt(state.getPlayerScore(1));
+        buffer.put(frame);
+        buffer.flip();
+        return buffer;
+    }
+}
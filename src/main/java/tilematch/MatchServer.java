@@ -0,0 +1,563 @@
+package tilematch;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * The MatchServer class hosts two-player matches over TCP using non-blocking
+ * java.nio channels.
+ * One selector thread accepts connections, pairs players who asked for the
+ * same game and board size, applies their moves directly to the match's game
+ * state and sends both players the board changes as {@link GridDelta} frames. Timer expiry from
+ * {@link GameTimerService} is handed to the selector thread, so every game
+ * state is only ever touched by that one thread. Spectators can watch any
+ * running match; each message is encoded once and shared between the players
+ * and every spectator through the match's {@link SpectatorChannel}. See
+ * {@link MatchProtocol} for the message format.
+ */
+public class MatchServer implements AutoCloseable {
+    // Disconnect a client whose unsent output grows past this
+    private static final int MAX_PENDING_OUTPUT = 1 << 20;
+    // Frames a spectator may fall behind before it is resynced with a keyframe
+    private static final int MAX_SPECTATOR_BACKLOG = 64;
+
+    private final Selector selector;
+    private final ServerSocketChannel serverChannel;
+    private final Map<String, Connection> waiting = new HashMap<>();
+    private final Map<Integer, Match> matches = new HashMap<>();
+    private final Queue<Match> matchesToUpdate = new ConcurrentLinkedQueue<>();
+    private Thread thread;
+    private volatile boolean running = false;
+    private int nextMatchId = 1;
+
+    /**
+     * Creates a new MatchServer bound to the specified port.
+     *
+     * @param port The port to listen on, or 0 for any free port
+     * @throws IOException If the port cannot be bound
+     */
+    public MatchServer(int port) throws IOException {
+        selector = Selector.open();
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress(port));
+        serverChannel.configureBlocking(false);
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+    }
+
+    /**
+     * The main entry point for running a standalone server.
+     *
+     * @param args The port to listen on (default 7777)
+     * @throws IOException If the port cannot be bound
+     */
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 7777;
+        MatchServer server = new MatchServer(port);
+        System.out.println("Match server listening on port " + server.getPort());
+        server.run();
+    }
+
+    /**
+     * Starts the server on its own thread.
+     */
+    public void start() {
+        thread = new Thread(this::run, "match-server");
+        thread.start();
+    }
+
+    /**
+     * Gets the port the server is listening on.
+     *
+     * @return The port
+     */
+    public int getPort() {
+        return serverChannel.socket().getLocalPort();
+    }
+
+    /**
+     * Runs the selector loop on the calling thread until the server is closed.
+     */
+    public void run() {
+        running = true;
+        try {
+            while (running) {
+                selector.select();
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.isAcceptable()) {
+                        accept();
+                    } else {
+                        Connection connection = (Connection) key.attachment();
+                        try {
+                            if (key.isReadable()) {
+                                connection.read();
+                            }
+                            if (key.isValid() && key.isWritable()) {
+                                connection.flush();
+                            }
+                        } catch (IOException e) {
+                            disconnect(connection);
+                        }
+                    }
+                }
+                Match match;
+                while ((match = matchesToUpdate.poll()) != null) {
+                    match.update();
+                }
+            }
+        } catch (IOException | ClosedSelectorException e) {
+            if (running) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Stops the server and closes every connection.
+     */
+    @Override
+    public void close() throws IOException {
+        running = false;
+        selector.wakeup();
+        if (thread != null && thread != Thread.currentThread()) {
+            try {
+                thread.join(5000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        for (SelectionKey key : selector.keys()) {
+            if (key.attachment() instanceof Connection) {
+                ((Connection) key.attachment()).closeQuietly();
+            }
+        }
+        serverChannel.close();
+        selector.close();
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel;
+        while ((channel = serverChannel.accept()) != null) {
+            channel.configureBlocking(false);
+            channel.socket().setTcpNoDelay(true);
+            Connection connection = new Connection(channel);
+            connection.key = channel.register(selector, SelectionKey.OP_READ, connection);
+        }
+    }
+
+    private void disconnect(Connection connection) {
+        connection.closeQuietly();
+        waiting.values().remove(connection);
+        if (connection.watching != null) {
+            connection.subscription.close();
+            connection.watching.watchers.remove(connection);
+            connection.watching = null;
+        }
+        Match match = connection.match;
+        if (match != null) {
+            match.close();
+            Connection opponent = match.seats[1 - connection.seat];
+            ByteBuffer message = MatchProtocol.message(MatchProtocol.OPPONENT_LEFT, 0);
+            message.flip();
+            match.broadcast(message);
+            opponent.match = null;
+        }
+    }
+
+    /**
+     * Handles one complete message from a client.
+     */
+    private void handleMessage(Connection connection, byte type, ByteBuffer payload) {
+        switch (type) {
+            case MatchProtocol.HELLO:
+                handleHello(connection, payload);
+                break;
+            case MatchProtocol.WATCH:
+                if (payload.remaining() >= 5 && checkVersion(connection, payload.get() & 0xFF)) {
+                    handleWatch(connection, payload.getInt());
+                }
+                break;
+            case MatchProtocol.MOVE:
+                if (connection.match != null && payload.remaining() >= 8) {
+                    connection.match.move(connection.seat, payload.getShort() & 0xFFFF, payload.getShort() & 0xFFFF,
+                            payload.getShort() & 0xFFFF, payload.getShort() & 0xFFFF);
+                }
+                break;
+            default:
+                disconnect(connection);
+                break;
+        }
+    }
+
+    private void handleWatch(Connection connection, int matchId) {
+        Match match = matches.get(matchId);
+        if (match == null || connection.match != null || connection.watching != null) {
+            ByteBuffer message = MatchProtocol.message(MatchProtocol.REJECT, 1);
+            message.put(MatchProtocol.UNKNOWN_MATCH);
+            message.flip();
+            connection.send(message);
+            return;
+        }
+        connection.watching = match;
+        connection.subscription = match.spectators.subscribe();
+        match.watchers.add(connection);
+        connection.pumpSpectatorFrames();
+    }
+
+    /**
+     * Checks the protocol version a client speaks, and rejects the request if
+     * it is not this server's.
+     *
+     * @return True if the client speaks this server's version
+     */
+    private boolean checkVersion(Connection connection, int version) {
+        if (version == MatchProtocol.VERSION) {
+            return true;
+        }
+        ByteBuffer message = MatchProtocol.message(MatchProtocol.REJECT, 1);
+        message.put(MatchProtocol.UNSUPPORTED_VERSION);
+        message.flip();
+        connection.send(message);
+        return false;
+    }
+
+    private void handleHello(Connection connection, ByteBuffer payload) {
+        if (connection.match != null || connection.watching != null || waiting.containsValue(connection) || payload.remaining() < 6) {
+            return;
+        }
+        if (!checkVersion(connection, payload.get() & 0xFF)) {
+            return;
+        }
+        int typeIndex = payload.get() & 0xFF;
+        int rows = payload.getShort() & 0xFFFF;
+        int columns = payload.getShort() & 0xFFFF;
+        if (typeIndex >= GameType.values().length || rows < 3 || columns < 3) {
+            disconnect(connection);
+            return;
+        }
+        connection.name = MatchProtocol.readText(payload);
+        if (connection.name.isEmpty()) {
+            connection.name = "Player";
+        }
+
+        // Pair with a player waiting for the same game and board size
+        String lobby = typeIndex + ":" + rows + "x" + columns;
+        Connection opponent = waiting.remove(lobby);
+        if (opponent == null || !opponent.isOpen()) {
+            waiting.put(lobby, connection);
+            return;
+        }
+        Match match = new Match(nextMatchId++, GameType.values()[typeIndex], rows, columns, opponent, connection);
+        matches.put(match.id, match);
+        match.start();
+    }
+
+    /**
+     * A pair of connected players sharing one game state.
+     */
+    private class Match {
+        private final int id;
+        private final GameType gameType;
+        private final GameState state;
+        private final Connection[] seats;
+        private final byte[] sentCodes; // The board as the clients last saw it
+        private final SpectatorChannel spectators;
+        private final List<Connection> watchers = new ArrayList<>();
+        private long lastUpdateTime = System.nanoTime();
+        private boolean closed = false;
+        private final GameEvents.Session sessionEvent = new GameEvents.Session();
+
+        Match(int id, GameType gameType, int rows, int columns, Connection first, Connection second) {
+            this.id = id;
+            this.gameType = gameType;
+            this.state = gameType.createState(rows, columns);
+            this.seats = new Connection[] { first, second };
+            this.sentCodes = new byte[rows * columns];
+            this.spectators = new SpectatorChannel(() -> MatchProtocol.encodeGrid(state), MAX_SPECTATOR_BACKLOG);
+            first.match = this;
+            first.seat = 0;
+            second.match = this;
+            second.seat = 1;
+            state.setMessage(state.setPlayerNames(first.name, second.name));
+            // Timers fire on their own thread; hand the update to the selector thread
+            state.setUpdateRequester(() -> {
+                matchesToUpdate.add(this);
+                selector.wakeup();
+            });
+        }
+
+        void start() {
+            sessionEvent.begin();
+            for (Connection player : seats) {
+                Connection opponent = seats[1 - player.seat];
+                ByteBuffer message = MatchProtocol.messageWithText(MatchProtocol.MATCH_START, 5, opponent.name);
+                message.putInt(id);
+                message.put((byte) player.seat);
+                message.position(message.limit());
+                message.flip();
+                player.send(message);
+            }
+            broadcast(MatchProtocol.encodeGrid(state));
+            GridDelta.capture(state.getGrid(), sentCodes);
+        }
+
+        /**
+         * Sends both players the board changes since the last broadcast.
+         */
+        void broadcastChanges() {
+            broadcast(MatchProtocol.encodeDelta(state, sentCodes));
+            GridDelta.capture(state.getGrid(), sentCodes);
+        }
+
+        void move(int seat, int row1, int col1, int row2, int col2) {
+            if (closed) {
+                return;
+            }
+            if (seat != state.getCurrPlayerIndex()) {
+                reject(seat, MatchProtocol.NOT_YOUR_TURN);
+                return;
+            }
+            Grid grid = state.getGrid();
+            if (!grid.isOccupied(row1, col1)) {
+                reject(seat, MatchProtocol.INVALID_MOVE);
+                return;
+            }
+            switch (gameType) {
+                case BEJEWELED:
+                    if (Math.abs(row1 - row2) + Math.abs(col1 - col2) != 1 || !grid.isOccupied(row2, col2)) {
+                        reject(seat, MatchProtocol.INVALID_MOVE);
+                        return;
+                    }
+                    if (!((TileMatchingGameEnvironment) state).swap(row1, col1, row2, col2)) {
+                        reject(seat, MatchProtocol.NO_MATCH);
+                        return;
+                    }
+                    break;
+                case SAME_GAME:
+                    state.select(row1, col1);
+                    state.handleInput("P");
+                    break;
+            }
+            update();
+            if (!closed) {
+                broadcastChanges();
+            }
+        }
+
+        /**
+         * Runs the game update, which handles timer expiry and game over.
+         */
+        void update() {
+            if (closed) {
+                return;
+            }
+            int[] winsBefore = state.getPlayerWins();
+            int activeBefore = state.getCurrPlayerIndex();
+            long currentTime = System.nanoTime();
+            state.update((currentTime - lastUpdateTime) / 1_000_000_000.0);
+            lastUpdateTime = currentTime;
+
+            if (state.isGameOver()) {
+                int[] winsAfter = state.getPlayerWins();
+                byte winner = MatchProtocol.TIE;
+                if (winsAfter[0] > winsBefore[0]) {
+                    winner = 0;
+                } else if (winsAfter[1] > winsBefore[1]) {
+                    winner = 1;
+                }
+                ByteBuffer message = MatchProtocol.message(MatchProtocol.GAME_OVER, 1);
+                message.put(winner);
+                message.flip();
+                broadcast(message);
+                close();
+            } else if (state.getCurrPlayerIndex() != activeBefore) {
+                // A timer handed the turn to the other player
+                broadcastChanges();
+            }
+        }
+
+        void reject(int seat, byte reason) {
+            ByteBuffer message = MatchProtocol.message(MatchProtocol.REJECT, 1);
+            message.put(reason);
+            message.flip();
+            seats[seat].send(message);
+        }
+
+        /**
+         * Sends a message to both players and every spectator. The message is
+         * shared, not copied.
+         */
+        void broadcast(ByteBuffer message) {
+            for (Connection player : seats) {
+                player.send(message.duplicate());
+            }
+            spectators.publish(message);
+            // Copy: a watcher whose socket fails is removed while pumping
+            for (Connection watcher : watchers.toArray(new Connection[0])) {
+                watcher.pumpSpectatorFrames();
+            }
+        }
+
+        void close() {
+            if (!closed) {
+                closed = true;
+                matches.remove(id);
+                sessionEvent.finish("match", gameType, id, state.getGrid());
+                state.dispose();
+                for (Connection player : seats) {
+                    if (player.match == this) {
+                        player.match = null;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * One client connection with its read buffer and queued output.
+     */
+    private class Connection {
+        private final SocketChannel channel;
+        // Holds several client messages, which are all small (see MAX_CLIENT_MESSAGE_SIZE)
+        private final ByteBuffer input = ByteBuffer.allocate(4096);
+        private final ArrayDeque<ByteBuffer> output = new ArrayDeque<>();
+        private int pendingOutput = 0;
+        private SelectionKey key;
+        private Match match;
+        private int seat;
+        private Match watching;
+        private SpectatorChannel.Subscriber subscription;
+        private ByteBuffer spectatorFrame; // Partly written spectator frame
+        private String name = "Player";
+
+        Connection(SocketChannel channel) {
+            this.channel = channel;
+        }
+
+        boolean isOpen() {
+            return channel.isOpen();
+        }
+
+        void read() throws IOException {
+            int read = channel.read(input);
+            if (read < 0) {
+                disconnect(this);
+                return;
+            }
+            input.flip();
+            while (isOpen() && input.remaining() >= MatchProtocol.HEADER_SIZE) {
+                int length = input.getInt(input.position());
+                if (length < 1 || length > MatchProtocol.MAX_CLIENT_MESSAGE_SIZE) {
+                    // Clients never send more than this, so the input buffer never has to grow
+                    disconnect(this);
+                    return;
+                }
+                if (input.remaining() < MatchProtocol.HEADER_SIZE + length) {
+                    break;
+                }
+                input.position(input.position() + MatchProtocol.HEADER_SIZE);
+                byte type = input.get();
+                ByteBuffer payload = input.slice();
+                payload.limit(length - 1);
+                input.position(input.position() + length - 1);
+                handleMessage(this, type, payload);
+            }
+            input.compact();
+        }
+
+        void send(ByteBuffer message) {
+            if (!isOpen()) {
+                return;
+            }
+            if (output.isEmpty()) {
+                try {
+                    channel.write(message);
+                } catch (IOException e) {
+                    disconnect(this);
+                    return;
+                }
+                if (!message.hasRemaining()) {
+                    return;
+                }
+            }
+            output.add(message);
+            pendingOutput += message.remaining();
+            if (pendingOutput > MAX_PENDING_OUTPUT) {
+                disconnect(this);
+                return;
+            }
+            key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+        }
+
+        void flush() throws IOException {
+            while (!output.isEmpty()) {
+                ByteBuffer message = output.peek();
+                int before = message.remaining();
+                channel.write(message);
+                pendingOutput -= before - message.remaining();
+                if (message.hasRemaining()) {
+                    return;
+                }
+                output.poll();
+            }
+            key.interestOps(SelectionKey.OP_READ);
+            pumpSpectatorFrames();
+        }
+
+        /**
+         * Writes queued spectator frames until the socket would block. Frames
+         * that cannot be written yet stay in the subscription, whose backlog is
+         * bounded by the spectator channel.
+         */
+        void pumpSpectatorFrames() {
+            if (subscription == null || !isOpen() || !output.isEmpty()) {
+                return;
+            }
+            try {
+                while (true) {
+                    if (spectatorFrame == null) {
+                        spectatorFrame = subscription.poll();
+                        if (spectatorFrame == null) {
+                            return;
+                        }
+                    }
+                    channel.write(spectatorFrame);
+                    if (spectatorFrame.hasRemaining()) {
+                        key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+                        return;
+                    }
+                    spectatorFrame = null;
+                }
+            } catch (IOException e) {
+                disconnect(this);
+            }
+        }
+
+        void closeQuietly() {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                // Already closed
+            }
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package tilematch;
+
+import java.awt.Color;
+import java.util.Arrays;
+
+/**
+ * The Palette class maps block colors to small integer ids.
+ * Ids run from 1 to {@link #size()} in the order the colors were given; 0
+ * means no block. Blocks and grids store ids, so matching compares ints and
+ * only rendering turns an id back into a Color. A palette holds up to 255
+ * colors so that an id fits in a byte.
+ *
+ * Each palette also holds the shared block for every type and color (see
+ * {@link #block(Block.BlockType, int)}).
+ */
+public final class Palette {
+    public static final int EMPTY = 0;
+    public static final int MAX_COLORS = 255;
+    // Declared before STANDARD, which uses it while the class initializes
+    private static final Block.BlockType[] TYPES = Block.BlockType.values();
+
+    /**
+     * The colors used by the built-in games.
+     */
+    public static final Palette STANDARD = new Palette(
+            Color.RED, Color.BLUE, Color.GREEN, Color.YELLOW,
+            Color.MAGENTA, Color.CYAN, Color.ORANGE, Color.PINK);
+
+    private static final Palette[] SIZED = new Palette[MAX_COLORS + 1]; // Cache for ofSize, by size
+
+    private final Color[] colors; // Indexed by id; colors[0] is null
+    private final Block[][] blocks; // Indexed by type ordinal, then id
+
+    /**
+     * Creates a new Palette.
+     *
+     * @param colors The colors, which get ids 1, 2, 3 and so on
+     * @throws IllegalArgumentException If there are no colors, more than 255,
+     *                                  or a color is repeated
+     */
+    public Palette(Color... colors) {
+        if (colors.length == 0 || colors.length > MAX_COLORS) {
+            throw new IllegalArgumentException("A palette needs 1 to " + MAX_COLORS + " colors");
+        }
+        this.colors = new Color[colors.length + 1];
+        for (int i = 0; i < colors.length; i++) {
+            if (colors[i] == null || Arrays.asList(colors).indexOf(colors[i]) != i) {
+                throw new IllegalArgumentException("Palette colors must be distinct and not null");
+            }
+            this.colors[i + 1] = colors[i];
+        }
+        this.blocks = new Block[TYPES.length][this.colors.length];
+        for (Block.BlockType type : TYPES) {
+            for (int id = 1; id < this.colors.length; id++) {
+                blocks[type.ordinal()][id] = new Block(type, this, id);
+            }
+        }
+    }
+
+    /**
+     * Gets a palette with the specified number of colors. The standard colors
+     * come first, so a palette of up to 8 colors is a prefix of
+     * {@link #STANDARD} and a palette of 8 is STANDARD itself; further colors
+     * are spread around the hue circle at two levels of brightness. Palettes
+     * are shared, so asking for the same size twice gives the same palette.
+     *
+     * @param size The number of colors, from 1 to {@link #MAX_COLORS}
+     * @return The palette
+     * @throws IllegalArgumentException If the size is out of range
+     */
+    public static synchronized Palette ofSize(int size) {
+        if (size < 1 || size > MAX_COLORS) {
+            throw new IllegalArgumentException("A palette needs 1 to " + MAX_COLORS + " colors");
+        }
+        if (size == STANDARD.size()) {
+            return STANDARD;
+        }
+        if (SIZED[size] == null) {
+            Color[] colors = Arrays.copyOf(STANDARD.colors, size + 1);
+            int extra = size - STANDARD.size();
+            for (int i = 0; i < extra; i++) {
+                // Golden-ratio hue steps keep neighbouring ids far apart in hue
+                float hue = (0.07f + i * 0.618034f) % 1f;
+                float brightness = i % 2 == 0 ? 0.95f : 0.65f;
+                Color color = Color.getHSBColor(hue, 0.75f, brightness);
+                while (Arrays.asList(colors).contains(color)) {
+                    color = new Color((color.getRGB() + 1) & 0xFFFFFF);
+                }
+                colors[STANDARD.size() + 1 + i] = color;
+            }
+            SIZED[size] = new Palette(Arrays.copyOfRange(colors, 1, size + 1));
+        }
+        return SIZED[size];
+    }
+
+    /**
+     * Gets the number of colors.
+     *
+     * @return The number of colors, which is also the highest id
+     */
+    public int size() {
+        return colors.length - 1;
+    }
+
+    /**
+     * Gets the color with the specified id.
+     *
+     * @param id The color id
+     * @return The color, or null for {@link #EMPTY}
+     * @throws IllegalArgumentException If the id is not in this palette
+     */
+    public Color getColor(int id) {
+        checkId(id);
+        return colors[id];
+    }
+
+    /**
+     * Gets the id of a color.
+     *
+     * @param color The color
+     * @return The id, or {@link #EMPTY} if the color is not in this palette
+     */
+    public int idOf(Color color) {
+        for (int id = 1; id < colors.length; id++) {
+            if (colors[id].equals(color)) {
+                return id;
+            }
+        }
+        return EMPTY;
+    }
+
+    /**
+     * Gets the colors in id order.
+     *
+     * @return A copy of the colors; element 0 has id 1
+     */
+    public Color[] getColors() {
+        return Arrays.copyOfRange(colors, 1, colors.length);
+    }
+
+    /**
+     * Gets the shared block with the specified type and color id.
+     *
+     * @param type The type of the block
+     * @param id   The color id, from 1 to {@link #size()}
+     * @return The block
+     * @throws IllegalArgumentException If the id is not a color in this palette
+     */
+    public Block block(Block.BlockType type, int id) {
+        if (id == EMPTY) {
+            throw new IllegalArgumentException("Color id 0 is the empty cell");
+        }
+        checkId(id);
+        return blocks[type.ordinal()][id];
+    }
+
+    private void checkId(int id) {
+        if (id < 0 || id >= colors.length) {
+            throw new IllegalArgumentException("Color id " + id + " is not in a palette of " + size() + " colors");
+        }
+    }
+}
@@ -0,0 +1,210 @@
+package tilematch;
+
+import java.util.BitSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * The ParallelMatchScanner class finds the cells that belong to a match: a
+ * horizontal or vertical run of at least three blocks of one color.
+ * Whether a cell is in such a run can be decided from the cells at most two
+ * steps away, so the board can be cut into horizontal stripes that are
+ * scanned independently, each reading two rows above and below itself. Stripes
+ * start on 64-cell word boundaries, so each writes its own words of one shared
+ * result and nothing has to be merged. Within a stripe each row is handed to a
+ * {@link RowMatcher}, which may compare many cells at once.
+ *
+ * Boards of at least {@link #PARALLEL_THRESHOLD} cells are split into stripes
+ * on a {@link ForkJoinPool}; smaller boards are scanned on the calling thread,
+ * where splitting would cost more than it saves. The grid must not change
+ * during a scan.
+ */
+public class ParallelMatchScanner {
+    /**
+     * The number of cells from which a board is scanned in parallel.
+     */
+    public static final int PARALLEL_THRESHOLD = 256 * 256;
+    // The number of cells a stripe should have before it is not split further
+    private static final int MIN_STRIPE_CELLS = 64 * 1024;
+
+    private final ForkJoinPool pool;
+    private final int threshold;
+    private final RowMatcher matcher;
+
+    /**
+     * Creates a new ParallelMatchScanner on the common fork-join pool.
+     */
+    public ParallelMatchScanner() {
+        this(ForkJoinPool.commonPool(), PARALLEL_THRESHOLD);
+    }
+
+    /**
+     * Creates a new ParallelMatchScanner.
+     *
+     * @param pool      The pool to scan stripes on
+     * @param threshold The number of cells from which boards are scanned in
+     *                  parallel
+     */
+    public ParallelMatchScanner(ForkJoinPool pool, int threshold) {
+        this(pool, threshold, RowMatcher.preferred());
+    }
+
+    /**
+     * Creates a new ParallelMatchScanner.
+     *
+     * @param pool      The pool to scan stripes on
+     * @param threshold The number of cells from which boards are scanned in
+     *                  parallel
+     * @param matcher   The matcher that scans each row
+     */
+    public ParallelMatchScanner(ForkJoinPool pool, int threshold, RowMatcher matcher) {
+        this.pool = pool;
+        this.threshold = threshold;
+        this.matcher = matcher;
+    }
+
+    /**
+     * Finds every cell that belongs to a match.
+     *
+     * @param grid The board
+     * @return The matched cells, indexed row * columns + column
+     */
+    public BitSet scan(Grid grid) {
+        long[] words = new long[(grid.getRows() * grid.getColumns() + 63) >>> 6];
+        if (!isParallel(grid)) {
+            scanRows(matcher, grid, 0, grid.getRows(), words, null);
+        } else {
+            pool.invoke(new ScanTask(matcher, grid, 0, grid.getRows(), stripeRows(grid), words, null));
+        }
+        return BitSet.valueOf(words);
+    }
+
+    /**
+     * Checks whether the board has any match. A parallel check stops every
+     * stripe as soon as one finds a match.
+     *
+     * @param grid The board
+     * @return True if some cell belongs to a match, false otherwise
+     */
+    public boolean hasMatch(Grid grid) {
+        if (!isParallel(grid)) {
+            return scanRows(matcher, grid, 0, grid.getRows(), null, null);
+        }
+        AtomicBoolean found = new AtomicBoolean(false);
+        pool.invoke(new ScanTask(matcher, grid, 0, grid.getRows(), stripeRows(grid), null, found));
+        return found.get();
+    }
+
+    /**
+     * Checks whether a board is large enough to be scanned in parallel.
+     *
+     * @param grid The board
+     * @return True if scans of the board are split across the pool
+     */
+    public boolean isParallel(Grid grid) {
+        return (long) grid.getRows() * grid.getColumns() >= threshold && pool.getParallelism() > 1;
+    }
+
+    /**
+     * Gets the number of rows a stripe is cut at: a multiple of
+     * {@link #alignRows(int)}, so every stripe starts on a word boundary.
+     */
+    private static int stripeRows(Grid grid) {
+        int align = alignRows(grid.getColumns());
+        int rows = Math.max(1, MIN_STRIPE_CELLS / Math.max(1, grid.getColumns()));
+        return (rows + align - 1) / align * align;
+    }
+
+    /**
+     * Gets the smallest number of rows that spans whole 64-bit words.
+     */
+    private static int alignRows(int columns) {
+        return 64 / Integer.lowestOneBit(columns | 64);
+    }
+
+    /**
+     * Scans rows [fromRow, toRow). Records matched cells in words if it is
+     * not null; otherwise stops at the first match, or when found is set.
+     *
+     * @return True if a match was found
+     */
+    private static boolean scanRows(RowMatcher matcher, Grid grid, int fromRow, int toRow,
+                                    long[] words, AtomicBoolean found) {
+        int columns = grid.getColumns();
+        byte[] empty = new byte[columns];
+        byte[] cells = new byte[columns];
+        boolean any = false;
+        for (int row = fromRow; row < toRow; row++) {
+            if (found != null && found.get()) {
+                return true;
+            }
+            int count = matcher.matchRow(colorRow(grid, row - 2, empty), colorRow(grid, row - 1, empty),
+                    grid.colorRow(row), colorRow(grid, row + 1, empty), colorRow(grid, row + 2, empty), cells);
+            if (count > 0) {
+                if (words == null) {
+                    if (found != null) {
+                        found.set(true);
+                    }
+                    return true;
+                }
+                int base = row * columns;
+                for (int col = 0; col < columns; col++) {
+                    if (cells[col] != 0) {
+                        int cell = base + col;
+                        words[cell >>> 6] |= 1L << cell;
+                    }
+                }
+                any = true;
+            }
+        }
+        return any;
+    }
+
+    private static byte[] colorRow(Grid grid, int row, byte[] empty) {
+        return row >= 0 && row < grid.getRows() ? grid.colorRow(row) : empty;
+    }
+
+    /**
+     * Scans a stripe of rows, splitting it in two while it is large. Halves
+     * are split on word boundaries, so in a full scan each writes only its
+     * own words of the shared result.
+     */
+    private static final class ScanTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final RowMatcher matcher;
+        private final Grid grid;
+        private final int fromRow;
+        private final int toRow;
+        private final int stripeRows;
+        private final long[] words;
+        private final AtomicBoolean found;
+
+        ScanTask(RowMatcher matcher, Grid grid, int fromRow, int toRow, int stripeRows,
+                 long[] words, AtomicBoolean found) {
+            this.matcher = matcher;
+            this.grid = grid;
+            this.fromRow = fromRow;
+            this.toRow = toRow;
+            this.stripeRows = stripeRows;
+            this.words = words;
+            this.found = found;
+        }
+
+        @Override
+        protected void compute() {
+            if (found != null && found.get()) {
+                return;
+            }
+            if (toRow - fromRow <= stripeRows) {
+                scanRows(matcher, grid, fromRow, toRow, words, found);
+                return;
+            }
+            int align = alignRows(grid.getColumns());
+            int midRow = fromRow + Math.max(align, (toRow - fromRow) / 2 / align * align);
+            invokeAll(new ScanTask(matcher, grid, fromRow, midRow, stripeRows, words, found),
+                    new ScanTask(matcher, grid, midRow, toRow, stripeRows, words, found));
+        }
+    }
+}
@@ -0,0 +1,231 @@
+package tilematch;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * The PlayerStats class is an immutable snapshot of one player's record across
+ * every game type: games played, wins, losses, best score and the most recent
+ * results. Recording a game returns a new snapshot, so a snapshot can be read
+ * or written to disk by any thread without locking.
+ */
+public final class PlayerStats {
+    // Most recent results kept per game type
+    public static final int HISTORY_SIZE = 10;
+
+    public static final byte WIN = 1;
+    public static final byte LOSS = 2;
+    public static final byte TIE = 3;
+
+    private final String name;
+    private final TypeStats[] types;
+
+    private PlayerStats(String name, TypeStats[] types) {
+        this.name = name;
+        this.types = types;
+    }
+
+    /**
+     * Creates the stats of a player who has not played yet.
+     *
+     * @param name The player's name
+     * @return Empty stats
+     */
+    public static PlayerStats empty(String name) {
+        TypeStats[] types = new TypeStats[GameType.values().length];
+        Arrays.fill(types, TypeStats.EMPTY);
+        return new PlayerStats(name, types);
+    }
+
+    /**
+     * Returns these stats with the result of one more game added.
+     *
+     * @param gameType The game that was played
+     * @param score    The player's final score
+     * @param outcome  WIN, LOSS or TIE
+     * @param time     When the game ended, in milliseconds since the epoch
+     * @return The updated stats
+     */
+    public PlayerStats withResult(GameType gameType, int score, byte outcome, long time) {
+        TypeStats[] updated = types.clone();
+        updated[gameType.ordinal()] = types[gameType.ordinal()].withResult(gameType, score, outcome, time);
+        return new PlayerStats(name, updated);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Gets the number of games played, across all game types.
+     *
+     * @return The number of games played
+     */
+    public int getGamesPlayed() {
+        int total = 0;
+        for (TypeStats type : types) {
+            total += type.played;
+        }
+        return total;
+    }
+
+    /**
+     * Gets the number of games won, across all game types.
+     *
+     * @return The number of wins
+     */
+    public int getWins() {
+        int total = 0;
+        for (TypeStats type : types) {
+            total += type.wins;
+        }
+        return total;
+    }
+
+    public int getGamesPlayed(GameType gameType) {
+        return types[gameType.ordinal()].played;
+    }
+
+    public int getWins(GameType gameType) {
+        return types[gameType.ordinal()].wins;
+    }
+
+    public int getLosses(GameType gameType) {
+        return types[gameType.ordinal()].losses;
+    }
+
+    /**
+     * Gets the player's best score in a game type. Whether higher or lower is
+     * better depends on the game (see {@link GameType#isLowerScoreBetter()}).
+     *
+     * @param gameType The game type
+     * @return The best score, or -1 if the player has not played it
+     */
+    public int getBestScore(GameType gameType) {
+        TypeStats type = types[gameType.ordinal()];
+        return type.played == 0 ? -1 : type.best;
+    }
+
+    /**
+     * Gets the most recent results in a game type, oldest first.
+     *
+     * @param gameType The game type
+     * @return The scores of the recent games
+     */
+    public int[] getRecentScores(GameType gameType) {
+        return types[gameType.ordinal()].scores.clone();
+    }
+
+    /**
+     * Gets the outcomes of the most recent games in a game type, oldest first.
+     *
+     * @param gameType The game type
+     * @return WIN, LOSS or TIE for each recent game, matching
+     *         {@link #getRecentScores(GameType)}
+     */
+    public byte[] getRecentOutcomes(GameType gameType) {
+        return types[gameType.ordinal()].outcomes.clone();
+    }
+
+    /**
+     * Gets when the most recent games in a game type ended, oldest first.
+     *
+     * @param gameType The game type
+     * @return Milliseconds since the epoch for each recent game
+     */
+    public long[] getRecentTimes(GameType gameType) {
+        return types[gameType.ordinal()].times.clone();
+    }
+
+    /**
+     * Writes these stats to a record body.
+     */
+    void writeTo(DataOutputStream out) throws IOException {
+        out.writeUTF(name);
+        out.writeByte(types.length);
+        for (TypeStats type : types) {
+            out.writeInt(type.played);
+            out.writeInt(type.wins);
+            out.writeInt(type.losses);
+            out.writeInt(type.best);
+            out.writeByte(type.scores.length);
+            for (int i = 0; i < type.scores.length; i++) {
+                out.writeLong(type.times[i]);
+                out.writeInt(type.scores[i]);
+                out.writeByte(type.outcomes[i]);
+            }
+        }
+    }
+
+    /**
+     * Reads stats written by {@link #writeTo(DataOutputStream)}. Game types
+     * added since the stats were written start out empty.
+     */
+    static PlayerStats readFrom(DataInputStream in) throws IOException {
+        String name = in.readUTF();
+        int count = in.readUnsignedByte();
+        TypeStats[] types = new TypeStats[GameType.values().length];
+        Arrays.fill(types, TypeStats.EMPTY);
+        for (int t = 0; t < count; t++) {
+            int played = in.readInt();
+            int wins = in.readInt();
+            int losses = in.readInt();
+            int best = in.readInt();
+            int history = in.readUnsignedByte();
+            long[] times = new long[history];
+            int[] scores = new int[history];
+            byte[] outcomes = new byte[history];
+            for (int i = 0; i < history; i++) {
+                times[i] = in.readLong();
+                scores[i] = in.readInt();
+                outcomes[i] = in.readByte();
+            }
+            if (t < types.length) {
+                types[t] = new TypeStats(played, wins, losses, best, times, scores, outcomes);
+            }
+        }
+        return new PlayerStats(name, types);
+    }
+
+    /**
+     * One player's record in one game type.
+     */
+    private static final class TypeStats {
+        static final TypeStats EMPTY = new TypeStats(0, 0, 0, 0, new long[0], new int[0], new byte[0]);
+
+        final int played;
+        final int wins;
+        final int losses;
+        final int best;
+        final long[] times;
+        final int[] scores;
+        final byte[] outcomes;
+
+        TypeStats(int played, int wins, int losses, int best, long[] times, int[] scores, byte[] outcomes) {
+            this.played = played;
+            this.wins = wins;
+            this.losses = losses;
+            this.best = best;
+            this.times = times;
+            this.scores = scores;
+            this.outcomes = outcomes;
+        }
+
+        TypeStats withResult(GameType gameType, int score, byte outcome, long time) {
+            boolean better = played == 0
+                    || (gameType.isLowerScoreBetter() ? score < best : score > best);
+            int kept = Math.min(scores.length, HISTORY_SIZE - 1);
+            int dropped = scores.length - kept;
+            long[] newTimes = Arrays.copyOfRange(times, dropped, dropped + kept + 1);
+            int[] newScores = Arrays.copyOfRange(scores, dropped, dropped + kept + 1);
+            byte[] newOutcomes = Arrays.copyOfRange(outcomes, dropped, dropped + kept + 1);
+            newTimes[kept] = time;
+            newScores[kept] = score;
+            newOutcomes[kept] = outcome;
+            return new TypeStats(played + 1, wins + (outcome == WIN ? 1 : 0), losses + (outcome == LOSS ? 1 : 0),
+                    better ? score : best, newTimes, newScores, newOutcomes);
+        }
+    }
+}
@@ -0,0 +1,404 @@
+package tilematch;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32;
+
+/**
+ * The PlayerStatsStore class keeps every player's {@link PlayerStats} in an
+ * append-only log file, with an in-memory index keyed by player name.
+ * Recording a game updates the index at once and queues the new snapshots for
+ * a background writer. The writer appends everything queued since its last
+ * write in one go and forces it to disk once, so many games recorded together
+ * share a single sync (group commit).
+ *
+ * Each record is a 4-byte length, a CRC-32 of the body and the body. The last
+ * record for a name wins. A record torn by a crash fails its length or
+ * checksum and is cut off when the log is next opened. When the log holds
+ * more than twice as many records as there are players, the writer compacts it
+ * into a fresh file with one record per player and atomically moves it over
+ * the old one, so loading stays proportional to the number of players.
+ *
+ * If a write fails, the log is truncated back to its last complete batch so
+ * no torn record is left in front of later ones, and the store stops saving:
+ * games are still recorded in memory, but {@link #flush()} reports that they
+ * are not on disk.
+ */
+public class PlayerStatsStore implements AutoCloseable {
+    private static final int RECORD_HEADER_SIZE = 8;
+    private static final int MAX_RECORD_SIZE = 1 << 16;
+    // Never compact logs smaller than this many records
+    private static final int MIN_RECORDS_TO_COMPACT = 1024;
+    private static PlayerStatsStore shared;
+
+    private final Path file; // Null for a store that is never saved
+    private final Map<String, PlayerStats> index = new ConcurrentHashMap<>();
+    private final Object lock = new Object();
+    private final ArrayDeque<PlayerStats> pending = new ArrayDeque<>(); // Guarded by lock
+    private long submitted = 0; // Guarded by lock
+    private long durable = 0; // Guarded by lock
+    private boolean closed = false; // Guarded by lock
+    private boolean failed = false; // Guarded by lock; set when a write fails
+    private FileChannel channel; // Used by the writer thread once it starts; null if lost
+    private int recordCount = 0; // Records in the log file
+    private Thread writer;
+
+    private PlayerStatsStore(Path file) {
+        this.file = file;
+    }
+
+    /**
+     * Opens a store, loading its log. The log is created if it does not exist.
+     *
+     * @param file The log file
+     * @return The open store
+     * @throws IOException If the log cannot be read or created
+     */
+    public static PlayerStatsStore open(Path file) throws IOException {
+        PlayerStatsStore store = new PlayerStatsStore(file);
+        store.load();
+        store.writer = new Thread(store::writeLoop, "stats-writer");
+        store.writer.setDaemon(true);
+        store.writer.start();
+        return store;
+    }
+
+    /**
+     * Creates a store that is kept in memory only.
+     *
+     * @return The new store
+     */
+    public static PlayerStatsStore inMemory() {
+        return new PlayerStatsStore(null);
+    }
+
+    /**
+     * Gets the store shared by the game launchers, kept in the user's home
+     * directory. If the log cannot be opened, stats are kept in memory for
+     * this run only.
+     *
+     * @return The shared store
+     */
+    public static synchronized PlayerStatsStore shared() {
+        if (shared == null) {
+            try {
+                Path directory = Paths.get(System.getProperty("user.home"), ".tmge");
+                Files.createDirectories(directory);
+                shared = open(directory.resolve("stats.log"));
+                Runtime.getRuntime().addShutdownHook(new Thread(shared::close, "stats-shutdown"));
+            } catch (IOException e) {
+                e.printStackTrace();
+                shared = inMemory();
+            }
+        }
+        return shared;
+    }
+
+    /**
+     * Gets a player's stats.
+     *
+     * @param name The player's name
+     * @return The player's stats, empty if they have never played
+     */
+    public PlayerStats getStats(String name) {
+        PlayerStats stats = index.get(name);
+        return stats != null ? stats : PlayerStats.empty(name);
+    }
+
+    /**
+     * Gets the stats of every player in the store.
+     *
+     * @return A snapshot of all players' stats
+     */
+    public Collection<PlayerStats> getAllStats() {
+        return new ArrayList<>(index.values());
+    }
+
+    /**
+     * Gets the number of players in the store.
+     *
+     * @return The number of players
+     */
+    public int size() {
+        return index.size();
+    }
+
+    /**
+     * Records a finished game. The index is updated before this returns; the
+     * log is written in the background (see {@link #flush()}).
+     *
+     * @param gameType The game that was played
+     * @param names    The players' names, by seat
+     * @param scores   The players' final scores, by seat
+     * @param winner   The winning seat, or -1 for a tie
+     */
+    public void recordGame(GameType gameType, String[] names, int[] scores, int winner) {
+        long time = System.currentTimeMillis();
+        synchronized (lock) {
+            for (int seat = 0; seat < names.length; seat++) {
+                byte outcome = winner < 0 ? PlayerStats.TIE : winner == seat ? PlayerStats.WIN : PlayerStats.LOSS;
+                int score = scores[seat];
+                PlayerStats updated = index.compute(names[seat],
+                        (name, stats) -> (stats != null ? stats : PlayerStats.empty(name))
+                                .withResult(gameType, score, outcome, time));
+                if (file != null && !closed && !failed) {
+                    pending.add(updated);
+                    submitted++;
+                }
+            }
+            lock.notifyAll();
+        }
+    }
+
+    /**
+     * Blocks until every game recorded so far is on disk, or the log can no
+     * longer be written.
+     *
+     * @return True if every game recorded so far is on disk, false if a write
+     *         failed, the store is kept in memory only or the wait was
+     *         interrupted
+     */
+    public boolean flush() {
+        synchronized (lock) {
+            long target = submitted;
+            while (durable < target && !failed && writer != null && writer.isAlive()) {
+                try {
+                    lock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+            return file != null && durable >= target;
+        }
+    }
+
+    /**
+     * Writes everything still queued and closes the log.
+     */
+    @Override
+    public void close() {
+        synchronized (lock) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            lock.notifyAll();
+        }
+        if (writer != null) {
+            try {
+                writer.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Reads the log into the index, cutting off a torn record at its end.
+     */
+    private void load() throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        long size = channel.size();
+        ByteBuffer log = ByteBuffer.allocate((int) Math.min(size, Integer.MAX_VALUE));
+        while (log.hasRemaining() && channel.read(log, log.position()) > 0) {
+            // Keep reading until the buffer is full
+        }
+        log.flip();
+
+        CRC32 crc = new CRC32();
+        int valid = 0;
+        while (log.remaining() >= RECORD_HEADER_SIZE) {
+            int length = log.getInt();
+            int checksum = log.getInt();
+            if (length <= 0 || length > MAX_RECORD_SIZE || length > log.remaining()) {
+                break;
+            }
+            byte[] body = new byte[length];
+            log.get(body);
+            crc.reset();
+            crc.update(body);
+            if ((int) crc.getValue() != checksum) {
+                break;
+            }
+            PlayerStats stats = PlayerStats.readFrom(new DataInputStream(new ByteArrayInputStream(body)));
+            index.put(stats.getName(), stats);
+            recordCount++;
+            valid = log.position();
+        }
+        if (valid < size) {
+            System.err.println("Discarding " + (size - valid) + " damaged bytes at the end of " + file);
+            channel.truncate(valid);
+        }
+        channel.position(valid);
+        if (shouldCompact()) {
+            compact();
+        }
+    }
+
+    /**
+     * Runs on the writer thread: appends queued snapshots in batches, syncing
+     * once per batch.
+     */
+    private void writeLoop() {
+        List<PlayerStats> batch = new ArrayList<>();
+        while (true) {
+            long upTo;
+            synchronized (lock) {
+                while (pending.isEmpty() && !closed) {
+                    try {
+                        lock.wait();
+                    } catch (InterruptedException e) {
+                        closed = true;
+                    }
+                }
+                if (pending.isEmpty()) {
+                    break;
+                }
+                batch.addAll(pending);
+                pending.clear();
+                upTo = submitted;
+            }
+            long start = -1; // Where the batch starts in the log
+            boolean written = false;
+            try {
+                ByteArrayOutputStream out = new ByteArrayOutputStream(256 * batch.size());
+                for (PlayerStats stats : batch) {
+                    writeRecord(out, stats);
+                }
+                ByteBuffer buffer = ByteBuffer.wrap(out.toByteArray());
+                start = channel.size();
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                channel.force(false);
+                recordCount += batch.size();
+                written = true;
+                if (shouldCompact()) {
+                    compact();
+                }
+            } catch (IOException e) {
+                e.printStackTrace();
+                if (!written) {
+                    rollBack(start);
+                }
+            }
+            batch.clear();
+            synchronized (lock) {
+                if (written) {
+                    durable = upTo;
+                }
+                if (!written || channel == null) {
+                    // Later records would land after a damaged or lost tail; stop saving
+                    failed = true;
+                    pending.clear();
+                }
+                lock.notifyAll();
+                if (failed) {
+                    break;
+                }
+            }
+        }
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Cuts a partly written batch off the end of the log, so that a torn
+     * record is never followed by good ones, which loading would discard.
+     *
+     * @param start The log size before the batch, or -1 if it is unknown
+     */
+    private void rollBack(long start) {
+        if (start < 0) {
+            return;
+        }
+        try {
+            channel.truncate(start);
+            channel.force(false);
+        } catch (IOException e) {
+            // The torn record is still last, so the next load cuts it off
+            e.printStackTrace();
+        }
+    }
+
+    private boolean shouldCompact() {
+        return recordCount > Math.max(MIN_RECORDS_TO_COMPACT, 2 * index.size());
+    }
+
+    /**
+     * Rewrites the log with one record per player. Snapshots queued while this
+     * runs are at least as new as the ones it writes, so they are appended to
+     * the new log afterwards. The old log stays open until the new one is in
+     * place and reopened, so a failed compaction leaves the store writing to
+     * the old log; if the new log cannot be reopened, the channel is null.
+     */
+    private void compact() throws IOException {
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        int count = 0;
+        for (PlayerStats stats : index.values()) {
+            writeRecord(out, stats);
+            count++;
+        }
+        try (FileChannel compacted = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.wrap(out.toByteArray());
+            while (buffer.hasRemaining()) {
+                compacted.write(buffer);
+            }
+            compacted.force(true);
+        }
+        try {
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        FileChannel old = channel;
+        try {
+            channel = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            // The old channel now writes to a replaced file, so it must not be used
+            channel = null;
+            throw e;
+        } finally {
+            old.close();
+        }
+        recordCount = count;
+    }
+
+    private static void writeRecord(ByteArrayOutputStream out, PlayerStats stats) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream(128);
+        stats.writeTo(new DataOutputStream(body));
+        byte[] bytes = body.toByteArray();
+        CRC32 crc = new CRC32();
+        crc.update(bytes);
+        DataOutputStream header = new DataOutputStream(out);
+        header.writeInt(bytes.length);
+        header.writeInt((int) crc.getValue());
+        out.write(bytes);
+    }
+}
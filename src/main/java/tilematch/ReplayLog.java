@@ -0,0 +1,297 @@
+package tilematch;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * The ReplayLog class reads a log written by {@link ReplayRecorder} and plays
+ * it back.
+ * Games are deterministic given their seed and inputs, so a replay rebuilds
+ * the opening board from the seed and feeds the logged commands back through
+ * the same code that handled them live. The palette is rebuilt from its size
+ * (see {@link Palette#ofSize(int)}). A replay can run headlessly as fast
+ * as possible, or in real time into a {@link Display}.
+ *
+ * <pre>
+ * log    := magic:i32 version:u8 gameType:u8 rows:u16 columns:u16 paletteSize:u8
+ *           seed:i64 player1:utf player2:utf batch*
+ * batch  := elapsedMillis:varint count:varint command:varint*
+ * </pre>
+ *
+ * Each batch holds the commands handled in one update, and its time is
+ * measured from the previous batch. A typical input costs three bytes. A log
+ * cut off by a crash is read up to its last complete batch.
+ */
+public class ReplayLog {
+    public static final int MAGIC = 0x544D524C; // "TMRL"
+    // 2: Bejeweled special blocks; 3: Bejeweled matches are straight runs; 4: palette size
+    public static final int VERSION = 4;
+    public static final String EXTENSION = ".tmr";
+
+    private final GameType gameType;
+    private final int rows;
+    private final int columns;
+    private final int paletteSize;
+    private final long seed;
+    private final String player1Name;
+    private final String player2Name;
+    private final long[] batchTimes; // Milliseconds since the session started
+    private final int[] batchEnds; // Index after each batch's last command
+    private final int[] commands;
+    private final int batchCount;
+
+    private ReplayLog(GameType gameType, int rows, int columns, int paletteSize, long seed, String player1Name,
+            String player2Name, long[] batchTimes, int[] batchEnds, int[] commands, int batchCount) {
+        this.gameType = gameType;
+        this.rows = rows;
+        this.columns = columns;
+        this.paletteSize = paletteSize;
+        this.seed = seed;
+        this.player1Name = player1Name;
+        this.player2Name = player2Name;
+        this.batchTimes = batchTimes;
+        this.batchEnds = batchEnds;
+        this.commands = commands;
+        this.batchCount = batchCount;
+    }
+
+    /**
+     * Replays a log given on the command line in a window, in real time.
+     *
+     * @param args The log file, and optionally a speed multiplier
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.err.println("Usage: ReplayLog <file" + EXTENSION + "> [speed]");
+            return;
+        }
+        ReplayLog log = read(Paths.get(args[0]));
+        double speed = args.length > 1 ? Double.parseDouble(args[1]) : 1.0;
+        // Size the window and camera for the logged board as a launcher would
+        GameConfig config = new GameConfig();
+        config.setRows(log.rows);
+        config.setColumns(log.columns);
+        log.play(new Display(config.getWindowWidth(), config.getWindowHeight(),
+                log.getGameType().getDisplayName() + " Replay"), config, speed);
+    }
+
+    /**
+     * Reads a replay log.
+     *
+     * @param file The log file
+     * @return The log
+     * @throws IOException If the file cannot be read or is not a replay log
+     */
+    public static ReplayLog read(Path file) throws IOException {
+        return read(ByteBuffer.wrap(Files.readAllBytes(file)));
+    }
+
+    /**
+     * Reads a replay log from memory.
+     *
+     * @param in The log bytes
+     * @return The log
+     * @throws IOException If the bytes are not a replay log
+     */
+    public static ReplayLog read(ByteBuffer in) throws IOException {
+        GameType gameType;
+        int rows;
+        int columns;
+        int paletteSize;
+        long seed;
+        String player1Name;
+        String player2Name;
+        try {
+            if (in.getInt() != MAGIC) {
+                throw new IOException("Not a replay log");
+            }
+            int version = in.get() & 0xFF;
+            if (version != VERSION) {
+                throw new IOException("Unsupported replay log version " + version);
+            }
+            int typeIndex = in.get() & 0xFF;
+            if (typeIndex >= GameType.values().length) {
+                throw new IOException("Unknown game type " + typeIndex);
+            }
+            gameType = GameType.values()[typeIndex];
+            rows = in.getShort() & 0xFFFF;
+            columns = in.getShort() & 0xFFFF;
+            paletteSize = in.get() & 0xFF;
+            if (paletteSize == 0) {
+                throw new IOException("Replay log has an empty palette");
+            }
+            seed = in.getLong();
+            player1Name = readUTF(in);
+            player2Name = readUTF(in);
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Truncated replay log header", e);
+        }
+
+        // Every batch and command takes at least one byte, which bounds the arrays
+        int capacity = Math.max(1, in.remaining() / 2);
+        long[] batchTimes = new long[capacity];
+        int[] batchEnds = new int[capacity];
+        int[] commands = new int[Math.max(1, in.remaining())];
+        int batchCount = 0;
+        int commandCount = 0;
+        long time = 0;
+        while (in.hasRemaining()) {
+            int start = in.position();
+            try {
+                long batchTime = time + GridDelta.readVarint(in);
+                int count = GridDelta.readVarint(in);
+                if (count < 0 || count > in.remaining()) {
+                    throw new BufferUnderflowException();
+                }
+                for (int i = 0; i < count; i++) {
+                    commands[commandCount + i] = GridDelta.readVarint(in);
+                }
+                time = batchTime;
+                commandCount += count;
+                batchTimes[batchCount] = time;
+                batchEnds[batchCount] = commandCount;
+                batchCount++;
+            } catch (BufferUnderflowException | IllegalArgumentException e) {
+                in.position(start);
+                break; // The session ended mid-write; keep the complete batches
+            }
+        }
+        return new ReplayLog(gameType, rows, columns, paletteSize, seed, player1Name, player2Name, batchTimes, batchEnds,
+                commands, batchCount);
+    }
+
+    /**
+     * Creates the game state at the start of the logged session. Its timers do
+     * not post expiry; the log supplies it.
+     *
+     * @return The opening game state
+     */
+    public GameState createState() {
+        GameState state = gameType.createState(rows, columns, seed, Palette.ofSize(paletteSize));
+        state.setReplaying(true);
+        state.setMessage(state.setPlayerNames(player1Name, player2Name));
+        return state;
+    }
+
+    /**
+     * Re-simulates the whole log as fast as possible, without a window.
+     *
+     * @return The game state at the end of the log
+     */
+    public GameState replay() {
+        GameState state = createState();
+        for (int batch = 0; batch < batchCount; batch++) {
+            applyBatch(state, batch);
+        }
+        state.dispose();
+        return state;
+    }
+
+    /**
+     * Replays the log into a window, keeping the logged timing. Blocks until
+     * the replay ends.
+     *
+     * @param display The window to render into
+     * @param speed   How much faster than real time to play; 1 for real time
+     * @return The game state at the end of the log
+     * @throws InterruptedException If the thread is interrupted while waiting
+     *                              for the next batch
+     */
+    public GameState play(Display display, double speed) throws InterruptedException {
+        return play(display, null, speed);
+    }
+
+    /**
+     * Plays the log into a window, drawing the board through a camera fitted
+     * to the window so that large boards scroll.
+     *
+     * @param display The window to render into
+     * @param config  The config that sized the window, or null to draw the
+     *                whole board
+     * @param speed   How much faster than real time to play; 1 for real time
+     * @return The game state at the end of the log
+     * @throws InterruptedException If the thread is interrupted while waiting
+     *                              for the next batch
+     */
+    public GameState play(Display display, GameConfig config, double speed) throws InterruptedException {
+        GameState state = createState();
+        state.setDisplay(display);
+        if (config != null) {
+            state.getGrid().setCamera(config.createCamera(state.getGrid()));
+        }
+        long start = System.nanoTime();
+        display.render(state);
+        for (int batch = 0; batch < batchCount; batch++) {
+            long due = start + (long) (batchTimes[batch] * 1_000_000L / speed);
+            long wait;
+            while ((wait = due - System.nanoTime()) > 0) {
+                // Keep redrawing so the clocks tick between inputs
+                Thread.sleep(Math.max(1, Math.min(wait / 1_000_000L, 100)));
+                display.render(state);
+            }
+            applyBatch(state, batch);
+            display.render(state);
+        }
+        state.dispose();
+        return state;
+    }
+
+    private void applyBatch(GameState state, int batch) {
+        int from = batch == 0 ? 0 : batchEnds[batch - 1];
+        for (int i = from; i < batchEnds[batch]; i++) {
+            // Returning to the menu ends a live session; a replay just stops there
+            if (InputCommand.command(commands[i]) != InputCommand.MENU) {
+                state.handleCommand(commands[i]);
+            }
+        }
+        state.update(0);
+    }
+
+    /**
+     * Gets the game that was played.
+     *
+     * @return The game type
+     */
+    public GameType getGameType() {
+        return gameType;
+    }
+
+    /**
+     * Gets the seed the opening board was generated from.
+     *
+     * @return The seed
+     */
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * Gets the number of commands in the log.
+     *
+     * @return The number of commands
+     */
+    public int getCommandCount() {
+        return batchCount == 0 ? 0 : batchEnds[batchCount - 1];
+    }
+
+    /**
+     * Gets how long the logged session ran, up to its last input.
+     *
+     * @return The duration in milliseconds
+     */
+    public long getDurationMillis() {
+        return batchCount == 0 ? 0 : batchTimes[batchCount - 1];
+    }
+
+    private static String readUTF(ByteBuffer in) {
+        byte[] bytes = new byte[in.getShort() & 0xFFFF];
+        in.get(bytes);
+        // DataOutputStream's modified UTF-8 matches UTF-8 for everything but NUL and supplementary characters
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,148 @@
+package tilematch;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * The ReplayRecorder class writes a game session to an append-only replay log.
+ * The log starts with everything needed to rebuild the opening board (the
+ * game, the grid and palette sizes and the random seed), followed by the packed input
+ * commands the session handled, grouped by the update they were handled in.
+ * Timer expiry reaches the game as commands too, so it is logged like any
+ * other input. See {@link ReplayLog} for the format and for playback.
+ *
+ * A recorder is used only by the thread that runs its game state.
+ */
+public class ReplayRecorder {
+    private final DataOutputStream out;
+    private final ByteArrayOutputStream batch = new ByteArrayOutputStream(64);
+    private final long startNanos = System.nanoTime();
+    private long lastBatchMillis = 0;
+    private int batchSize = 0;
+    private int[] commands = new int[16];
+    private boolean closed = false;
+
+    /**
+     * Creates a new ReplayRecorder and writes the log header.
+     *
+     * @param out      The stream to write the log to
+     * @param gameType The game being played
+     * @param state    The new game state, before any input
+     * @throws IOException If the header cannot be written
+     */
+    public ReplayRecorder(OutputStream out, GameType gameType, GameState state) throws IOException {
+        this.out = new DataOutputStream(new BufferedOutputStream(out));
+        this.out.writeInt(ReplayLog.MAGIC);
+        this.out.writeByte(ReplayLog.VERSION);
+        this.out.writeByte(gameType.ordinal());
+        this.out.writeShort(state.getGrid().getRows());
+        this.out.writeShort(state.getGrid().getColumns());
+        this.out.writeByte(state.getPalette().size());
+        this.out.writeLong(state.getSeed());
+        this.out.writeUTF(state.players.get(0).getName());
+        this.out.writeUTF(state.players.get(1).getName());
+        this.out.flush();
+    }
+
+    /**
+     * Starts recording a game state to a new file in the replay directory and
+     * attaches the recorder to the state. Recording is best effort: if the
+     * file cannot be created the game is simply not recorded.
+     *
+     * @param gameType The game being played
+     * @param state    The new game state, with its player names set
+     * @return The recorder, or null if the log could not be created
+     */
+    public static ReplayRecorder start(GameType gameType, GameState state) {
+        try {
+            Path directory = getReplayDirectory();
+            Files.createDirectories(directory);
+            Path file = directory.resolve(gameType.name().toLowerCase() + "-" + System.currentTimeMillis()
+                    + ReplayLog.EXTENSION);
+            ReplayRecorder recorder = new ReplayRecorder(
+                    Files.newOutputStream(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE), gameType,
+                    state);
+            state.setRecorder(recorder);
+            return recorder;
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * Gets the directory replay logs are saved in.
+     *
+     * @return The replay directory
+     */
+    public static Path getReplayDirectory() {
+        return Paths.get(System.getProperty("user.home"), ".tmge", "replays");
+    }
+
+    /**
+     * Records a command handled by the game state.
+     *
+     * @param packed The packed command (see {@link InputCommand})
+     */
+    public void record(int packed) {
+        if (closed) {
+            return;
+        }
+        if (batchSize == commands.length) {
+            int[] grown = new int[commands.length * 2];
+            System.arraycopy(commands, 0, grown, 0, batchSize);
+            commands = grown;
+        }
+        commands[batchSize++] = packed;
+    }
+
+    /**
+     * Ends the current update, appending the commands recorded since the last
+     * update to the log. Does nothing if there were none.
+     */
+    public void endBatch() {
+        if (closed || batchSize == 0) {
+            return;
+        }
+        long now = (System.nanoTime() - startNanos) / 1_000_000L;
+        batch.reset();
+        GridDelta.writeVarint(batch, (int) Math.min(Integer.MAX_VALUE, now - lastBatchMillis));
+        GridDelta.writeVarint(batch, batchSize);
+        for (int i = 0; i < batchSize; i++) {
+            GridDelta.writeVarint(batch, commands[i]);
+        }
+        lastBatchMillis = now;
+        batchSize = 0;
+        try {
+            // Flush every update so a crash loses at most the update in progress
+            batch.writeTo(out);
+            out.flush();
+        } catch (IOException e) {
+            e.printStackTrace();
+            close();
+        }
+    }
+
+    /**
+     * Writes any pending commands and closes the log.
+     */
+    public void close() {
+        if (closed) {
+            return;
+        }
+        endBatch();
+        closed = true;
+        try {
+            out.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+}
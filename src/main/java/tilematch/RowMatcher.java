@@ -0,0 +1,111 @@
+package tilematch;
+
+/**
+ * The RowMatcher class finds the matched cells of a board one row at a time,
+ * working on the grid's packed color rows (one byte per cell, 0 for empty).
+ * A cell belongs to a match when it is part of a horizontal or vertical run
+ * of at least three blocks of its color, that is, when one of the three
+ * windows of three cells across it, or one of the three windows down through
+ * it, holds a single color. Deciding a row therefore needs the rows up to two
+ * above and below it, and every column of a row is handled the same way.
+ *
+ * This class does the comparisons one cell at a time. {@link #preferred()}
+ * returns a matcher built on the incubating Vector API instead when the JVM
+ * was started with {@code --add-modules jdk.incubator.vector}; it compares a
+ * whole register of cells at once and gives the same results.
+ *
+ * Matchers keep no state and may be shared between threads.
+ */
+public class RowMatcher {
+    private static final String VECTOR_CLASS = "tilematch.VectorRowMatcher";
+    private static final RowMatcher SCALAR = new RowMatcher();
+    private static final RowMatcher PREFERRED = loadPreferred();
+
+    /**
+     * Creates a new RowMatcher.
+     */
+    protected RowMatcher() {
+    }
+
+    /**
+     * Gets the matcher that compares one cell at a time.
+     *
+     * @return The scalar matcher
+     */
+    public static RowMatcher scalar() {
+        return SCALAR;
+    }
+
+    /**
+     * Gets the fastest matcher available: the Vector API matcher if its module
+     * is present and the system property {@code tilematch.vector} is not
+     * false, otherwise the scalar matcher.
+     *
+     * @return The matcher to use
+     */
+    public static RowMatcher preferred() {
+        return PREFERRED;
+    }
+
+    /**
+     * Gets the name of this matcher, for reports.
+     *
+     * @return "scalar" or "vector"
+     */
+    public String getName() {
+        return "scalar";
+    }
+
+    /**
+     * Marks the matched cells of one row. Rows past the edge of the board are
+     * passed as all-empty rows.
+     *
+     * @param above2  The row two above
+     * @param above   The row above
+     * @param row     The row
+     * @param below   The row below
+     * @param below2  The row two below
+     * @param matched Set to 1 for matched cells and 0 for the others
+     * @return The number of matched cells in the row
+     */
+    public int matchRow(byte[] above2, byte[] above, byte[] row, byte[] below, byte[] below2, byte[] matched) {
+        int count = 0;
+        for (int col = 0; col < row.length; col++) {
+            matched[col] = matchCell(above2, above, row, below, below2, col);
+            count += matched[col];
+        }
+        return count;
+    }
+
+    /**
+     * Decides whether one cell is matched. Subclasses use this for the columns
+     * at the ends of a row.
+     */
+    protected static byte matchCell(byte[] above2, byte[] above, byte[] row, byte[] below, byte[] below2,
+                                    int col) {
+        byte id = row[col];
+        if (id == Palette.EMPTY) {
+            return 0;
+        }
+        boolean left = col >= 1 && row[col - 1] == id;
+        boolean right = col + 1 < row.length && row[col + 1] == id;
+        boolean matched = left && (right || col >= 2 && row[col - 2] == id)
+                || right && col + 2 < row.length && row[col + 2] == id
+                || above[col] == id && (below[col] == id || above2[col] == id)
+                || below[col] == id && below2[col] == id;
+        return (byte) (matched ? 1 : 0);
+    }
+
+    private static RowMatcher loadPreferred() {
+        if ("false".equals(System.getProperty("tilematch.vector"))
+                || ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty()) {
+            return SCALAR;
+        }
+        try {
+            return (RowMatcher) Class.forName(VECTOR_CLASS).getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            // Built without the vector profile; the scalar matcher gives the same results
+            return SCALAR;
+        }
+    }
+}
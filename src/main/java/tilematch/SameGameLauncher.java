@@ -1,6 +1,5 @@
 package tilematch;
 
-import java.awt.event.KeyAdapter;
 import java.awt.event.KeyEvent;
 import javax.swing.JOptionPane;
 
@@ -8,18 +7,38 @@ import javax.swing.JOptionPane;
  * A simple launcher for the Same Game.
  */
 public class SameGameLauncher extends GameLauncher {
-    private static final int WINDOW_WIDTH = 800;
-    private static final int WINDOW_HEIGHT = 600;
     private static final String WINDOW_TITLE = "Same Game";
 
+    /**
+     * Creates a new SameGameLauncher with the shared config.
+     */
+    public SameGameLauncher() {
+    }
+
+    /**
+     * Creates a new SameGameLauncher.
+     *
+     * @param config The board size, palette, and window and cell sizes
+     */
+    public SameGameLauncher(GameConfig config) {
+        super(config);
+    }
+
     /**
      * The main entry point for the application.
      *
-     * @param args The command line arguments
+     * @param args The command line arguments (see {@link GameConfig})
      */
     public static void main(String[] args) {
-        SameGameLauncher launcher = new SameGameLauncher();
-        launcher.run();
+        GameConfig config;
+        try {
+            config = GameConfig.fromArgs(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println("Usage: SameGameLauncher " + GameConfig.USAGE);
+            return;
+        }
+        GameSessionManager.launch(new SameGameLauncher(config));
     }
 
     @Override
@@ -27,19 +46,19 @@ public class SameGameLauncher extends GameLauncher {
         // Get player names from GameChooser
         String[] playerNames = getPlayerNames();
 
-        display = new Display(WINDOW_WIDTH, WINDOW_HEIGHT, WINDOW_TITLE);
-        gameState = new SameGameState(10, 10);
+        display = new Display(config.getWindowWidth(), config.getWindowHeight(), WINDOW_TITLE);
+        gameState = config.createState(GameType.SAME_GAME);
         gameState.setDisplay(display);
 
         // Set player names
         String currPlayer = ((SameGameState) gameState).setPlayerNames(playerNames[0], playerNames[1]);
+        PlayerStatsStore stats = PlayerStatsStore.shared();
+        gameState.setStatsStore(stats);
+        gameState.setLeaderboard(Leaderboard.shared(GameType.SAME_GAME));
+        gameState.setPlayerWins(stats.getStats(playerNames[0]).getWins(), stats.getStats(playerNames[1]).getWins());
         ((SameGameState) gameState).setMessage(currPlayer + "'s Turn!");
-        display.addKeyListener(new KeyAdapter() {
-            @Override
-            public void keyPressed(KeyEvent e) {
-                handleKeyPress(e.getKeyCode());
-            }
-        });
+        ReplayRecorder.start(GameType.SAME_GAME, gameState);
+        display.addKeyListener(createKeyListener());
 
         running = true;
         lastUpdateTime = System.nanoTime();
@@ -55,25 +74,36 @@ public class SameGameLauncher extends GameLauncher {
     protected void handleKeyPress(int keyCode) {
         switch (keyCode) {
             case KeyEvent.VK_UP:
-                gameState.handleInput("UP");
+                queueCommand(InputCommand.UP);
                 break;
             case KeyEvent.VK_DOWN:
-                gameState.handleInput("DOWN");
+                queueCommand(InputCommand.DOWN);
                 break;
             case KeyEvent.VK_LEFT:
-                gameState.handleInput("LEFT");
+                queueCommand(InputCommand.LEFT);
                 break;
             case KeyEvent.VK_RIGHT:
-                gameState.handleInput("RIGHT");
+                queueCommand(InputCommand.RIGHT);
                 break;
             case KeyEvent.VK_P:
-                gameState.handleInput("P");
+                queueCommand(InputCommand.POP);
                 break;
             case KeyEvent.VK_M:
-                gameState.handleInput("M");
+                queueCommand(InputCommand.MENU);
+                break;
+            case KeyEvent.VK_F3:
+                queueCommand(InputCommand.METRICS);
+                break;
+            case KeyEvent.VK_EQUALS:
+            case KeyEvent.VK_ADD:
+                queueCommand(InputCommand.ZOOM_IN);
+                break;
+            case KeyEvent.VK_MINUS:
+            case KeyEvent.VK_SUBTRACT:
+                queueCommand(InputCommand.ZOOM_OUT);
                 break;
             case KeyEvent.VK_ESCAPE:
-                running = false;
+                stop();
                 break;
         }
     }
@@ -5,7 +5,6 @@ import java.awt.Font;
 import java.awt.Graphics;
 import java.awt.Point;
 import java.util.Set;
-import javax.swing.SwingUtilities;
 
 /**
  * SameGameState implements a Same Game style matching game.
@@ -20,7 +19,23 @@ public class SameGameState extends TileMatchingGameEnvironment {
      * Creates a new SameGameState with the specified dimensions.
      */
     public SameGameState(int rows, int columns) {
-        super(rows, columns);
+        this(rows, columns, newSeed());
+    }
+
+    /**
+     * Creates a new SameGameState whose board is generated from the specified
+     * seed.
+     */
+    public SameGameState(int rows, int columns, long seed) {
+        this(rows, columns, seed, Palette.STANDARD);
+    }
+
+    /**
+     * Creates a new SameGameState whose board is generated from the specified
+     * seed in the specified palette.
+     */
+    public SameGameState(int rows, int columns, long seed, Palette palette) {
+        super(rows, columns, seed, palette);
         gridSave = new Grid(rows, columns);
         initializeGrid();
     }
@@ -39,8 +54,7 @@ public class SameGameState extends TileMatchingGameEnvironment {
             for (int col = 0; col < grid.getColumns(); col++) {
                 Block block = grid.getBlock(row, col);
                 if (block != null) {
-                    gridSave.placeBlock(new Block(block.getRow(), block.getColumn(), block.getType(), block.getColor()),
-                            row, col);
+                    gridSave.placeBlock(block, row, col);
                 }
             }
         }
@@ -80,15 +94,7 @@ public class SameGameState extends TileMatchingGameEnvironment {
                 checkSwitchPlayer();
                 break;
             case "M":
-                // Save current stats before returning to menu
-                GameChooser.updatePlayerNames(players.get(0).getName(), players.get(1).getName());
-                GameChooser.updatePlayerWins(player1Wins, player2Wins);
-                // Close the current display
-                SwingUtilities.invokeLater(() -> {
-                    display.getFrame().dispose();
-                    // Launch game chooser in a new thread
-                    new Thread(() -> GameChooser.main(new String[0])).start();
-                });
+                returnToMenu();
                 break;
         }
     }
@@ -122,7 +128,7 @@ public class SameGameState extends TileMatchingGameEnvironment {
         g.setColor(Color.WHITE);
         g.setFont(new Font("Arial", Font.BOLD, 16));
 
-        int textX = grid.getXOffset() + grid.getColumns() * grid.getCellSize() + 20;
+        int textX = grid.getXOffset() + grid.getScreenWidth() + 20;
         int textY = grid.getYOffset() + 30;
 
         g.drawString("Same Game", textX, textY);
@@ -136,13 +142,17 @@ public class SameGameState extends TileMatchingGameEnvironment {
         g.drawString("M: Return to Menu", textX, textY + 180);
     }
 
+    @Override
+    public GameType getGameType() {
+        return GameType.SAME_GAME;
+    }
+
     private void loadGridSave() {
         for (int row = 0; row < grid.getRows(); row++) {
             for (int col = 0; col < grid.getColumns(); col++) {
                 Block block = gridSave.getBlock(row, col);
                 if (block != null) {
-                    grid.placeBlock(new Block(block.getRow(), block.getColumn(), block.getType(), block.getColor()),
-                            row, col);
+                    grid.placeBlock(block, row, col);
                 }
             }
         }
@@ -163,12 +173,13 @@ public class SameGameState extends TileMatchingGameEnvironment {
         if (grid.isGridEmpty() && playerOneFinished) {
             if (players.get(0).getScore() > players.get(1).getScore()) {
                 message = players.get(1).getName() + " Wins!";
-                player2Wins++;
+                recordResult(1);
             } else if (players.get(0).getScore() < players.get(1).getScore()) {
                 message = players.get(0).getName() + " Wins!";
-                player1Wins++;
+                recordResult(0);
             } else {
                 message = "It's a Tie!";
+                recordResult(-1);
             }
             message2 = players.get(0).getName() + " Turns = " + players.get(0).getScore() + " | " +
                     players.get(1).getName() + " Turns = " + players.get(1).getScore();
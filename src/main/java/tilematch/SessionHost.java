@@ -0,0 +1,117 @@
+package tilematch;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The SessionHost class runs many headless game sessions in one JVM.
+ * Sessions do not own threads: a small, bounded pool of carrier threads runs
+ * whichever sessions currently have queued input or expired timers. Idle
+ * sessions only hold their game state, so tens of thousands of them fit in a
+ * modest heap. Player names and wins are kept per session rather than in
+ * {@link GameChooser}.
+ */
+public class SessionHost implements AutoCloseable {
+    private final ExecutorService carriers;
+    private final Map<Integer, GameSession> sessions = new ConcurrentHashMap<>();
+    private final AtomicInteger nextId = new AtomicInteger(1);
+
+    /**
+     * Creates a new SessionHost with one carrier thread per available core.
+     */
+    public SessionHost() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Creates a new SessionHost with the specified number of carrier threads.
+     *
+     * @param carrierThreads The number of threads that run session work
+     */
+    public SessionHost(int carrierThreads) {
+        AtomicInteger threadCount = new AtomicInteger();
+        this.carriers = Executors.newFixedThreadPool(Math.max(1, carrierThreads), runnable -> {
+            Thread thread = new Thread(runnable, "session-carrier-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Opens a new session.
+     *
+     * @param gameType    The game to play
+     * @param rows        The number of rows in the grid
+     * @param columns     The number of columns in the grid
+     * @param player1Name Player 1's name
+     * @param player2Name Player 2's name
+     * @return The new session
+     */
+    public GameSession open(GameType gameType, int rows, int columns, String player1Name, String player2Name) {
+        GameSession session = new GameSession(nextId.getAndIncrement(), gameType, rows, columns,
+                player1Name, player2Name, carriers);
+        sessions.put(session.getId(), session);
+        return session;
+    }
+
+    /**
+     * Gets an open session.
+     *
+     * @param id The session id
+     * @return The session, or null if there is no open session with that id
+     */
+    public GameSession get(int id) {
+        return sessions.get(id);
+    }
+
+    /**
+     * Closes a session and releases its timers.
+     *
+     * @param id The session id
+     */
+    public void close(int id) {
+        GameSession session = sessions.remove(id);
+        if (session != null) {
+            session.close();
+        }
+    }
+
+    /**
+     * Gets all open sessions.
+     *
+     * @return A live view of the open sessions
+     */
+    public Collection<GameSession> getSessions() {
+        return sessions.values();
+    }
+
+    /**
+     * Gets the number of open sessions.
+     *
+     * @return The number of open sessions
+     */
+    public int size() {
+        return sessions.size();
+    }
+
+    /**
+     * Closes every session and stops the carrier threads.
+     */
+    @Override
+    public void close() {
+        for (Integer id : sessions.keySet()) {
+            close(id);
+        }
+        carriers.shutdown();
+        try {
+            carriers.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package tilematch;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * The SpectatorChannel class fans one session's state changes out to any
+ * number of watchers.
+ * Each change is encoded once by the session and the same read-only buffer is
+ * queued for every subscriber, so the encoding cost per move does not depend
+ * on the number of spectators. A subscriber's queue is bounded: when it falls
+ * too far behind, its backlog is dropped and replaced with a single keyframe
+ * of the current board. The keyframe is encoded at most once per change and
+ * shared by every subscriber that needs it.
+ *
+ * Publishing and subscribing must happen on the session's own thread;
+ * subscribers may be polled from any thread.
+ */
+public class SpectatorChannel {
+    private final Supplier<ByteBuffer> keyframeSource;
+    private final int maxQueuedFrames;
+    private final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+    private ByteBuffer keyframe; // Keyframe of the current state, encoded on first use
+
+    /**
+     * Creates a new SpectatorChannel.
+     *
+     * @param keyframeSource  Encodes the full current state of the session
+     * @param maxQueuedFrames How many frames a subscriber may fall behind
+     *                        before its backlog is replaced by a keyframe
+     */
+    public SpectatorChannel(Supplier<ByteBuffer> keyframeSource, int maxQueuedFrames) {
+        this.keyframeSource = keyframeSource;
+        this.maxQueuedFrames = Math.max(1, maxQueuedFrames);
+    }
+
+    /**
+     * Adds a subscriber. It starts with a keyframe of the current state.
+     *
+     * @return The new subscriber
+     */
+    public Subscriber subscribe() {
+        Subscriber subscriber = new Subscriber();
+        subscriber.enqueue(keyframe());
+        subscribers.add(subscriber);
+        return subscriber;
+    }
+
+    /**
+     * Publishes an encoded state change to every subscriber.
+     *
+     * @param frame The encoded change; it must not be modified afterwards
+     */
+    public void publish(ByteBuffer frame) {
+        keyframe = null;
+        if (subscribers.isEmpty()) {
+            return;
+        }
+        ByteBuffer shared = frame.asReadOnlyBuffer();
+        for (Subscriber subscriber : subscribers) {
+            if (subscriber.closed) {
+                subscribers.remove(subscriber);
+            } else if (subscriber.size.get() >= maxQueuedFrames) {
+                // Too far behind: replace the backlog with the state it would reach
+                subscriber.resync(keyframe());
+            } else {
+                subscriber.enqueue(shared);
+            }
+        }
+    }
+
+    /**
+     * Gets the number of active subscribers.
+     *
+     * @return The number of subscribers
+     */
+    public int getSubscriberCount() {
+        return subscribers.size();
+    }
+
+    private ByteBuffer keyframe() {
+        if (keyframe == null) {
+            keyframe = keyframeSource.get().asReadOnlyBuffer();
+        }
+        return keyframe;
+    }
+
+    /**
+     * One watcher's queue of frames.
+     */
+    public static class Subscriber {
+        private final Queue<ByteBuffer> frames = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger size = new AtomicInteger();
+        private final AtomicInteger resyncs = new AtomicInteger();
+        private volatile boolean closed = false;
+
+        private void enqueue(ByteBuffer frame) {
+            frames.add(frame);
+            size.incrementAndGet();
+        }
+
+        private void resync(ByteBuffer keyframe) {
+            while (frames.poll() != null) {
+                size.decrementAndGet();
+            }
+            resyncs.incrementAndGet();
+            enqueue(keyframe);
+        }
+
+        /**
+         * Takes the next frame.
+         *
+         * @return A buffer positioned at the start of the frame, or null if
+         *         there are no queued frames
+         */
+        public ByteBuffer poll() {
+            ByteBuffer frame = frames.poll();
+            if (frame == null) {
+                return null;
+            }
+            size.decrementAndGet();
+            return frame.duplicate();
+        }
+
+        /**
+         * Gets the number of queued frames.
+         *
+         * @return The number of frames waiting to be polled
+         */
+        public int getQueuedFrames() {
+            return size.get();
+        }
+
+        /**
+         * Gets how many times this subscriber fell behind and was sent a
+         * keyframe instead of its backlog.
+         *
+         * @return The number of resyncs
+         */
+        public int getResyncCount() {
+            return resyncs.get();
+        }
+
+        /**
+         * Stops receiving frames.
+         */
+        public void close() {
+            closed = true;
+            frames.clear();
+            size.set(0);
+        }
+    }
+}
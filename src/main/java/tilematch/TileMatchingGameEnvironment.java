@@ -5,7 +5,7 @@ import java.awt.Font;
 import java.awt.Graphics;
 import java.awt.Point;
 import java.util.ArrayList;
-import java.util.HashSet;
+import java.util.BitSet;
 import java.util.List;
 import java.util.Set;
 
@@ -17,7 +17,7 @@ import java.util.Set;
  */
 public abstract class TileMatchingGameEnvironment extends GameState {
     // Minimum number of connected blocks required for popping
-    protected static final int MIN_BLOCKS_TO_POP = 3;
+    protected static final int MIN_BLOCKS_TO_POP = 3; // Also the run length LineMatcher and RowMatcher match
 
     // Maximum attempts to generate a grid without matches
     protected static final int MAX_GENERATION_ATTEMPTS = 100;
@@ -26,47 +26,75 @@ public abstract class TileMatchingGameEnvironment extends GameState {
     protected int swapRow = -1;
     protected int swapCol = -1;
     protected String message2 = "Click arrow keys to move selection";
+    private long cascadeLevels = 0;
+    private final EffectEngine effects;
+    private final LineMatcher lineMatcher;
+    private final ParallelMatchScanner matchScanner = new ParallelMatchScanner();
 
     public TileMatchingGameEnvironment(int rows, int columns) {
-        super(rows, columns);
+        this(rows, columns, newSeed());
+    }
+
+    public TileMatchingGameEnvironment(int rows, int columns, long seed) {
+        this(rows, columns, seed, Palette.STANDARD);
+    }
+
+    public TileMatchingGameEnvironment(int rows, int columns, long seed, Palette palette) {
+        super(rows, columns, seed, palette);
+        effects = new EffectEngine(rows, columns, palette);
+        lineMatcher = new LineMatcher(rows, columns);
     }
 
     /**
-     * Gets a list of colors that would not create a match at the specified
-     * position.
+     * Gets the number of times blocks have been cleared since the game was
+     * created: one for each level of a cascade, and one for each pop.
+     *
+     * @return The number of cascade levels
      */
-    public List<Color> getValidColorsForPosition(int row, int col) {
-        List<Color> validColors = new ArrayList<>();
+    public long getCascadeLevels() {
+        return cascadeLevels;
+    }
 
-        for (Color color : BLOCK_COLORS) {
-            if (isValidColorAtPosition(row, col, color)) {
-                validColors.add(color);
+    /**
+     * Gets the colors that would not create a match at the specified position.
+     *
+     * @param row      The row of the position
+     * @param col      The column of the position
+     * @param validIds Receives the valid color ids in palette order; must hold
+     *                 at least as many ids as the palette has colors
+     * @return The number of valid color ids written
+     */
+    public int getValidColorIdsForPosition(int row, int col, int[] validIds) {
+        int count = 0;
+        for (int id = 1; id <= palette.size(); id++) {
+            if (isValidColorAtPosition(row, col, id)) {
+                validIds[count++] = id;
             }
         }
-
-        return validColors;
+        return count;
     }
 
     /**
      * Checks if placing a block with the specified color at the position would
      * create a match.
+     *
+     * @param row     The row of the position
+     * @param col     The column of the position
+     * @param colorId The palette id of the color
+     * @return True if the color would not create a match, false otherwise
      */
-    public boolean isValidColorAtPosition(int row, int col, Color color) {
+    public boolean isValidColorAtPosition(int row, int col, int colorId) {
         // Check horizontal matches (need at least 2 same-colored blocks to the left)
         if (col >= 2 &&
-                grid.isOccupied(row, col - 1) &&
-                grid.isOccupied(row, col - 2) &&
-                grid.getBlock(row, col - 1).getColor().equals(color) &&
-                grid.getBlock(row, col - 2).getColor().equals(color)) {
+                grid.getColorId(row, col - 1) == colorId &&
+                grid.getColorId(row, col - 2) == colorId) {
             return false;
         }
 
         // Check vertical matches (need at least 2 same-colored blocks above)
         if (row >= 2 &&
-                grid.isOccupied(row - 1, col) &&
-                grid.isOccupied(row - 2, col) &&
-                grid.getBlock(row - 1, col).getColor().equals(color) &&
-                grid.getBlock(row - 2, col).getColor().equals(color)) {
+                grid.getColorId(row - 1, col) == colorId &&
+                grid.getColorId(row - 2, col) == colorId) {
             return false;
         }
 
@@ -80,31 +108,19 @@ public abstract class TileMatchingGameEnvironment extends GameState {
         for (int row = 0; row < grid.getRows(); row++) {
             for (int col = 0; col < grid.getColumns(); col++) {
                 // Use a checkerboard-like pattern with alternating colors
-                int colorIndex = (row + col) % BLOCK_COLORS.length;
-                Color color = BLOCK_COLORS[colorIndex];
-                Block block = new Block(row, col, Block.BlockType.STANDARD, color);
-                grid.placeBlock(block, row, col);
+                int colorId = 1 + (row + col) % palette.size();
+                grid.placeBlock(palette.block(Block.BlockType.STANDARD, colorId), row, col);
             }
         }
     }
 
     /**
-     * Checks if the grid has any matches.
+     * Checks if the grid has any matches: runs of at least three blocks of
+     * one color in a row or column. Large boards are checked in parallel (see
+     * {@link ParallelMatchScanner}).
      */
     public boolean hasMatches() {
-        for (int row = 0; row < grid.getRows(); row++) {
-            for (int col = 0; col < grid.getColumns(); col++) {
-                if (grid.isOccupied(row, col)) {
-                    Block block = grid.getBlock(row, col);
-                    Set<Point> matches = grid.findConnectedBlocks(row, col, block.getColor());
-
-                    if (matches.size() >= MIN_BLOCKS_TO_POP) {
-                        return true;
-                    }
-                }
-            }
-        }
-        return false;
+        return matchScanner.hasMatch(grid);
     }
 
     /**
@@ -148,35 +164,30 @@ public abstract class TileMatchingGameEnvironment extends GameState {
             }
 
             // Perform the swap
-            Block block1 = grid.removeBlock(swapRow, swapCol);
-            Block block2 = grid.removeBlock(selectedRow, selectedCol);
-
-            // Update block positions
-            block1.setPosition(selectedRow, selectedCol);
-            block2.setPosition(swapRow, swapCol);
-
-            // Place blocks in swapped positions
-            grid.placeBlock(block1, selectedRow, selectedCol);
-            grid.placeBlock(block2, swapRow, swapCol);
+            grid.swapBlocks(swapRow, swapCol, selectedRow, selectedCol);
 
             // Check for matches after swap
+            GameEvents.SwapValidation event = new GameEvents.SwapValidation();
+            event.begin();
+            long cascadeStart = System.nanoTime();
             boolean matchFound = checkForMatches();
+            metrics.getCascade().recordSince(cascadeStart);
 
             if (!matchFound) {
                 // Swap back if no matches
-                block1 = grid.removeBlock(selectedRow, selectedCol);
-                block2 = grid.removeBlock(swapRow, swapCol);
-
-                block1.setPosition(swapRow, swapCol);
-                block2.setPosition(selectedRow, selectedCol);
-
-                grid.placeBlock(block1, swapRow, swapCol);
-                grid.placeBlock(block2, selectedRow, selectedCol);
+                grid.swapBlocks(swapRow, swapCol, selectedRow, selectedCol);
 
                 message2 = "No matches found. Swap reversed.";
             } else {
                 message2 = "Blocks swapped and matches found!";
             }
+            event.end();
+            if (event.shouldCommit()) {
+                event.rows = grid.getRows();
+                event.columns = grid.getColumns();
+                event.matched = matchFound;
+                event.commit();
+            }
 
             // Reset swap selection
             swapRow = -1;
@@ -184,41 +195,101 @@ public abstract class TileMatchingGameEnvironment extends GameState {
         }
     }
 
+    /**
+     * Swaps two adjacent blocks as if the player had selected both with the
+     * cursor.
+     *
+     * @param row1 The row of the first block
+     * @param col1 The column of the first block
+     * @param row2 The row of the second block
+     * @param col2 The column of the second block
+     * @return True if the swap made a match and was kept, false if it was
+     *         invalid or reversed
+     */
+    public boolean swap(int row1, int col1, int row2, int col2) {
+        int mover = currPlayerIndex;
+        int scoreBefore = getPlayerScore(mover);
+        swapRow = -1;
+        swapCol = -1;
+        if (!select(row1, col1)) {
+            return false;
+        }
+        swapBlocks();
+        if (!select(row2, col2)) {
+            swapRow = -1;
+            swapCol = -1;
+            return false;
+        }
+        swapBlocks();
+        // An invalid second pick leaves the first block selected
+        swapRow = -1;
+        swapCol = -1;
+        return getPlayerScore(mover) > scoreBefore;
+    }
+
     /**
      * Checks for matches across the entire board.
      */
     public boolean checkForMatches() {
-        Set<Point> allMatches = new HashSet<>();
-
-        // Check each cell for potential matches
-        for (int row = 0; row < grid.getRows(); row++) {
-            for (int col = 0; col < grid.getColumns(); col++) {
-                if (grid.isOccupied(row, col)) {
-                    Block block = grid.getBlock(row, col);
-                    Set<Point> matches = grid.findConnectedBlocks(row, col, block.getColor());
+        return checkForMatches(1);
+    }
 
-                    if (matches.size() >= MIN_BLOCKS_TO_POP) {
-                        allMatches.addAll(matches);
-                    }
-                }
-            }
+    /**
+     * Checks for matches at one level of a cascade.
+     *
+     * @param depth 1 for the matches made by the move itself, 2 for the first
+     *              chain reaction, and so on
+     */
+    private boolean checkForMatches(int depth) {
+        GameEvents.CascadeLevel event = new GameEvents.CascadeLevel();
+        event.begin();
+        int columns = grid.getColumns();
+        // Every cell in a horizontal or vertical run, grouped where runs cross;
+        // large boards find the cells in parallel stripes and group just those
+        BitSet cleared = matchScanner.isParallel(grid)
+                ? lineMatcher.group(grid, matchScanner.scan(grid)) : lineMatcher.find(grid);
+        BitSet spawned = new BitSet(grid.getRows() * columns);
+        List<Block> spawns = new ArrayList<>();
+        for (LineMatcher.Match match : lineMatcher.getMatches()) {
+            spawnSpecial(match, cleared, depth, spawned, spawns);
         }
 
-        if (!allMatches.isEmpty()) {
-            // Remove all matched blocks
-            for (Point p : allMatches) {
-                grid.removeBlock(p.x, p.y);
+        if (!cleared.isEmpty()) {
+            // Matched special blocks set off their effects, which may set off more
+            int effects = this.effects.resolve(grid, cleared);
+            cleared.andNot(spawned);
+
+            // Remove all matched blocks, then put the new special blocks in place
+            for (int cell = cleared.nextSetBit(0); cell >= 0; cell = cleared.nextSetBit(cell + 1)) {
+                grid.removeBlock(cell / columns, cell % columns);
+            }
+            int spawnIndex = 0;
+            for (int cell = spawned.nextSetBit(0); cell >= 0; cell = spawned.nextSetBit(cell + 1)) {
+                grid.removeBlock(cell / columns, cell % columns);
+                grid.placeBlock(spawns.get(spawnIndex++), cell / columns, cell % columns);
             }
 
-            addCurrPlayerScore(allMatches.size() * 10);
-            message2 = "Popped " + allMatches.size() + " blocks!";
+            int clearedCount = cleared.cardinality();
+            cascadeLevels++;
+            addCurrPlayerScore(clearedCount * 10);
+            message2 = "Popped " + clearedCount + " blocks!";
 
             // Apply gravity and fill empty spaces
             grid.applyGravity();
             fillEmptySpaces();
 
+            event.end();
+            if (event.shouldCommit()) {
+                event.rows = grid.getRows();
+                event.columns = grid.getColumns();
+                event.depth = depth;
+                event.cellsCleared = clearedCount;
+                event.effectsTriggered = effects;
+                event.commit();
+            }
+
             // Check for new matches after blocks fall and new blocks are added
-            if (checkForMatches()) {
+            if (checkForMatches(depth + 1)) {
                 // If new matches were found, don't switch players yet
                 return true;
             }
@@ -231,18 +302,86 @@ public abstract class TileMatchingGameEnvironment extends GameState {
         return false;
     }
 
+    /**
+     * Keeps one block of a match of four or more as a special block (see
+     * {@link EffectEngine#specialFor(int, int, int)}). The block stays where
+     * the player moved a block to, if that is in the match, and otherwise at
+     * the match's lowest cell.
+     *
+     * @param match   The match
+     * @param cleared The matched cells
+     * @param depth   The cascade level; only the first comes from a swap
+     * @param spawned Receives the cell the special block is kept at
+     * @param spawns  Receives the special block; blocks are added in cell order
+     */
+    private void spawnSpecial(LineMatcher.Match match, BitSet cleared, int depth, BitSet spawned, List<Block> spawns) {
+        Block.BlockType type = EffectEngine.specialFor(match.size(),
+                match.getLongestHorizontalRun(), match.getLongestVerticalRun());
+        if (type == Block.BlockType.STANDARD) {
+            return;
+        }
+        int columns = grid.getColumns();
+        int at = -1;
+        if (depth == 1) {
+            for (int[] moved : new int[][] { { selectedRow, selectedCol }, { swapRow, swapCol } }) {
+                if (lineMatcher.matchAt(cleared, moved[0], moved[1]) == match && isStandard(moved[0], moved[1])) {
+                    at = moved[0] * columns + moved[1];
+                    break;
+                }
+            }
+        }
+        if (at < 0) {
+            // Cells are in ascending order, so the lowest row comes last
+            for (int cell : match.getCells()) {
+                // Specials already on the board are triggered, not replaced
+                if (isStandard(cell / columns, cell % columns) && (at < 0 || cell / columns > at / columns)) {
+                    at = cell;
+                }
+            }
+        }
+        if (at < 0) {
+            return;
+        }
+        // Keep spawns in cell order so they can be placed by walking the set
+        spawns.add(spawned.get(0, at).cardinality(), palette.block(type, match.getColorId()));
+        spawned.set(at);
+    }
+
+    private boolean isStandard(int row, int col) {
+        return grid.getBlock(row, col).getType() == Block.BlockType.STANDARD;
+    }
+
     /**
      * Fills empty spaces at the top of the grid with new random blocks.
      */
     public void fillEmptySpaces() {
+        GameEvents.Refill event = new GameEvents.Refill();
+        event.begin();
+        GridAnimator animator = grid.getAnimator();
+        int filled = 0;
         for (int col = 0; col < grid.getColumns(); col++) {
+            int columnFilled = 0;
             for (int row = 0; row < grid.getRows(); row++) {
                 if (!grid.isOccupied(row, col)) {
-                    Color color = BLOCK_COLORS[RANDOM.nextInt(BLOCK_COLORS.length)];
-                    Block block = new Block(row, col, Block.BlockType.STANDARD, color);
-                    grid.placeBlock(block, row, col);
+                    int colorId = 1 + random.nextInt(palette.size());
+                    grid.placeBlock(palette.block(Block.BlockType.STANDARD, colorId), row, col);
+                    columnFilled++;
                 }
             }
+            if (animator != null) {
+                // After gravity the new blocks fill the top of the column; they drop in as a stack
+                for (int row = 0; row < columnFilled; row++) {
+                    animator.enter(row, col, row - columnFilled);
+                }
+            }
+            filled += columnFilled;
+        }
+        event.end();
+        if (event.shouldCommit()) {
+            event.rows = grid.getRows();
+            event.columns = grid.getColumns();
+            event.cellsFilled = filled;
+            event.commit();
         }
     }
 
@@ -250,9 +389,12 @@ public abstract class TileMatchingGameEnvironment extends GameState {
      * Initializes the grid with random blocks, ensuring no initial matches.
      */
     public void initializeGridWithoutMatches() {
+        GameEvents.BoardGeneration event = new GameEvents.BoardGeneration();
+        event.begin();
         // Try to generate a grid without matches
         int attempts = 0;
         boolean validGrid = false;
+        int[] validIds = new int[palette.size()];
 
         while (!validGrid && attempts < MAX_GENERATION_ATTEMPTS) {
             // Clear the grid
@@ -261,20 +403,18 @@ public abstract class TileMatchingGameEnvironment extends GameState {
             // Fill the grid with random blocks
             for (int row = 0; row < grid.getRows(); row++) {
                 for (int col = 0; col < grid.getColumns(); col++) {
-                    // Get a list of colors that would not create a match
-                    List<Color> validColors = getValidColorsForPosition(row, col);
+                    // Get the colors that would not create a match
+                    int validCount = getValidColorIdsForPosition(row, col, validIds);
 
-                    if (validColors.isEmpty()) {
+                    int colorId;
+                    if (validCount == 0) {
                         // If no valid colors, use any color (this should be rare)
-                        Color color = BLOCK_COLORS[RANDOM.nextInt(BLOCK_COLORS.length)];
-                        Block block = new Block(row, col, Block.BlockType.STANDARD, color);
-                        grid.placeBlock(block, row, col);
+                        colorId = 1 + random.nextInt(palette.size());
                     } else {
                         // Choose a random color from valid colors
-                        Color color = validColors.get(RANDOM.nextInt(validColors.size()));
-                        Block block = new Block(row, col, Block.BlockType.STANDARD, color);
-                        grid.placeBlock(block, row, col);
+                        colorId = validIds[random.nextInt(validCount)];
                     }
+                    grid.placeBlock(palette.block(Block.BlockType.STANDARD, colorId), row, col);
                 }
             }
 
@@ -287,6 +427,14 @@ public abstract class TileMatchingGameEnvironment extends GameState {
             // If we couldn't generate a valid grid, just use a simple pattern
             createPatternedGrid();
         }
+        event.end();
+        if (event.shouldCommit()) {
+            event.rows = grid.getRows();
+            event.columns = grid.getColumns();
+            event.attempts = attempts;
+            event.fallback = !validGrid;
+            event.commit();
+        }
     }
 
     /**
@@ -297,19 +445,18 @@ public abstract class TileMatchingGameEnvironment extends GameState {
         // have the same color
         for (int row = 0; row < grid.getRows(); row++) {
             for (int col = 0; col < grid.getColumns(); col++) {
-                Color color;
-                if (row > 0 && RANDOM.nextDouble() < 0.7) {
+                int colorId;
+                if (row > 0 && random.nextDouble() < 0.7) {
                     // 70% chance to inherit the color from the block above
-                    color = grid.getBlock(row - 1, col).getColor();
-                } else if (col > 0 && RANDOM.nextDouble() < 0.7) {
+                    colorId = grid.getColorId(row - 1, col);
+                } else if (col > 0 && random.nextDouble() < 0.7) {
                     // 70% chance to inherit the color from the block to the left
-                    color = grid.getBlock(row, col - 1).getColor();
+                    colorId = grid.getColorId(row, col - 1);
                 } else {
                     // Otherwise, pick a random color
-                    color = BLOCK_COLORS[RANDOM.nextInt(BLOCK_COLORS.length)];
+                    colorId = 1 + random.nextInt(palette.size());
                 }
-                Block block = new Block(row, col, Block.BlockType.STANDARD, color);
-                grid.placeBlock(block, row, col);
+                grid.placeBlock(palette.block(Block.BlockType.STANDARD, colorId), row, col);
             }
         }
     }
@@ -324,11 +471,11 @@ public abstract class TileMatchingGameEnvironment extends GameState {
             return;
         }
 
-        Block selectedBlock = grid.getBlock(selectedRow, selectedCol);
-        Color targetColor = selectedBlock.getColor();
+        long cascadeStart = System.nanoTime();
+        int targetColorId = grid.getColorId(selectedRow, selectedCol);
 
         // Find all connected blocks of the same color using BFS
-        Set<Point> connectedBlocks = grid.findConnectedBlocks(selectedRow, selectedCol, targetColor);
+        Set<Point> connectedBlocks = grid.findConnectedBlocks(selectedRow, selectedCol, targetColorId);
 
         // Only pop if there are at least MIN_BLOCKS_TO_POP connected blocks
         if (connectedBlocks.size() >= 1) {
@@ -338,11 +485,13 @@ public abstract class TileMatchingGameEnvironment extends GameState {
             }
 
             // Update score and message
+            cascadeLevels++;
             addCurrPlayerScore(connectedBlocks.size());
             message2 = "Popped " + connectedBlocks.size() + " blocks!";
 
             // Apply gravity to make blocks fall
             grid.applyGravity();
+            metrics.getCascade().recordSince(cascadeStart);
         } else {
             message2 = "Need at least " + MIN_BLOCKS_TO_POP + " connected blocks to pop";
         }
@@ -350,10 +499,10 @@ public abstract class TileMatchingGameEnvironment extends GameState {
 
     @Override
     protected void renderSelectionHighlight(Graphics g) {
-        if (selectedRow >= 0 && selectedCol >= 0) {
-            g.setColor(new Color(255, 255, 255, 100)); // Semi-transparent white
-            int x = grid.getXOffset() + selectedCol * grid.getCellSize();
-            int y = grid.getYOffset() + selectedRow * grid.getCellSize();
+        if (selectedRow >= 0 && selectedCol >= 0 && grid.isCellVisible(selectedRow, selectedCol)) {
+            g.setColor(SELECTION_FILL);
+            int x = grid.getCellX(selectedCol);
+            int y = grid.getCellY(selectedRow);
             g.fillRect(x, y, grid.getCellSize(), grid.getCellSize());
 
             g.setColor(Color.WHITE);
@@ -363,10 +512,10 @@ public abstract class TileMatchingGameEnvironment extends GameState {
 
     @Override
     protected void renderSwapSelectionHighlight(Graphics g) {
-        if (swapMode && swapRow >= 0 && swapCol >= 0) {
-            g.setColor(new Color(255, 255, 0, 100)); // Semi-transparent yellow
-            int x = grid.getXOffset() + swapCol * grid.getCellSize();
-            int y = grid.getYOffset() + swapRow * grid.getCellSize();
+        if (swapMode && swapRow >= 0 && swapCol >= 0 && grid.isCellVisible(swapRow, swapCol)) {
+            g.setColor(SWAP_SELECTION_FILL);
+            int x = grid.getCellX(swapCol);
+            int y = grid.getCellY(swapRow);
             g.fillRect(x, y, grid.getCellSize(), grid.getCellSize());
 
             g.setColor(Color.YELLOW);
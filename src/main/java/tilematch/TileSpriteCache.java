@@ -0,0 +1,83 @@
+package tilematch;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+
+/**
+ * The TileSpriteCache class keeps a prerendered image of each kind of block
+ * at the current cell size, so drawing a still block is one image copy
+ * instead of the fills, lines and ovals of {@link Block#render}. Each sprite
+ * also holds the grid line along its top and left edges, so copying it gives
+ * exactly the pixels drawing the cell would.
+ *
+ * Sprites are drawn the first time a block of that type and color is shown
+ * at a size, and all of them are dropped and drawn again when the size
+ * changes, as it does when the camera zooms. Only plain {@link Block}s from a
+ * single palette are cached; {@link #get(Block, int)} returns null for
+ * others, which are drawn directly.
+ */
+public class TileSpriteCache {
+    private final Color lineColor;
+    private final Color backgroundColor;
+    private Palette palette;
+    private int cellSize = -1;
+    private BufferedImage[][] sprites; // Indexed by type ordinal, then color id
+
+    /**
+     * Creates a new TileSpriteCache.
+     *
+     * @param lineColor       The color of the grid lines
+     * @param backgroundColor The color of the grid behind the blocks
+     */
+    public TileSpriteCache(Color lineColor, Color backgroundColor) {
+        this.lineColor = lineColor;
+        this.backgroundColor = backgroundColor;
+    }
+
+    /**
+     * Gets the sprite for a block.
+     *
+     * @param block    The block
+     * @param cellSize The size of a cell in pixels
+     * @return The sprite, cellSize pixels square, or null if the block cannot
+     *         be cached
+     */
+    public BufferedImage get(Block block, int cellSize) {
+        if (block.getClass() != Block.class || cellSize < 3) {
+            return null;
+        }
+        if (palette == null) {
+            palette = block.palette;
+        } else if (block.palette != palette) {
+            return null;
+        }
+        if (cellSize != this.cellSize) {
+            // A new zoom level: every sprite is drawn again at the new size
+            this.cellSize = cellSize;
+            sprites = new BufferedImage[Block.BlockType.values().length][palette.size() + 1];
+        }
+        BufferedImage sprite = sprites[block.getType().ordinal()][block.getColorId()];
+        if (sprite == null) {
+            sprite = draw(block);
+            sprites[block.getType().ordinal()][block.getColorId()] = sprite;
+        }
+        return sprite;
+    }
+
+    private BufferedImage draw(Block block) {
+        BufferedImage sprite = new BufferedImage(cellSize, cellSize, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = sprite.createGraphics();
+        try {
+            g.setColor(backgroundColor);
+            g.fillRect(0, 0, cellSize, cellSize);
+            g.setColor(lineColor);
+            g.drawLine(0, 0, cellSize - 1, 0);
+            g.drawLine(0, 0, 0, cellSize - 1);
+            block.render(g, 0, 0, cellSize);
+        } finally {
+            g.dispose();
+        }
+        return sprite;
+    }
+}
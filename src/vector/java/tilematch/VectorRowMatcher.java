@@ -0,0 +1,66 @@
+package tilematch;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * The VectorRowMatcher class is a {@link RowMatcher} built on the incubating
+ * Vector API. It loads a register of cells, the same register shifted one and
+ * two columns left and right, and the rows up to two above and below, and
+ * compares them lane by lane, so one pass handles 16 to 64 cells depending on
+ * the CPU. The first two columns and the columns past the last full register
+ * are done one at a time.
+ *
+ * This class is compiled from src/vector/java by the vector profile and is
+ * only loaded by {@link RowMatcher#preferred()} when the JVM was started with
+ * {@code --add-modules jdk.incubator.vector}.
+ */
+public class VectorRowMatcher extends RowMatcher {
+    private static final VectorSpecies<Byte> SPECIES = ByteVector.SPECIES_PREFERRED;
+    private static final ByteVector ZERO = ByteVector.zero(SPECIES);
+    private static final ByteVector ONE = ByteVector.broadcast(SPECIES, (byte) 1);
+
+    /**
+     * Creates a new VectorRowMatcher.
+     */
+    public VectorRowMatcher() {
+    }
+
+    @Override
+    public String getName() {
+        return "vector";
+    }
+
+    @Override
+    public int matchRow(byte[] above2, byte[] above, byte[] row, byte[] below, byte[] below2, byte[] matched) {
+        int columns = row.length;
+        int count = 0;
+        int col = 0;
+        for (; col < Math.min(2, columns); col++) {
+            matched[col] = matchCell(above2, above, row, below, below2, col);
+            count += matched[col];
+        }
+        // Each register also reads two columns either side of it
+        for (; col + SPECIES.length() + 2 <= columns; col += SPECIES.length()) {
+            ByteVector cells = ByteVector.fromArray(SPECIES, row, col);
+            VectorMask<Byte> left = cells.eq(ByteVector.fromArray(SPECIES, row, col - 1));
+            VectorMask<Byte> right = cells.eq(ByteVector.fromArray(SPECIES, row, col + 1));
+            VectorMask<Byte> up = cells.eq(ByteVector.fromArray(SPECIES, above, col));
+            VectorMask<Byte> down = cells.eq(ByteVector.fromArray(SPECIES, below, col));
+            VectorMask<Byte> hits = left.and(right.or(cells.eq(ByteVector.fromArray(SPECIES, row, col - 2))))
+                    .or(right.and(cells.eq(ByteVector.fromArray(SPECIES, row, col + 2))))
+                    .or(up.and(down.or(cells.eq(ByteVector.fromArray(SPECIES, above2, col)))))
+                    .or(down.and(cells.eq(ByteVector.fromArray(SPECIES, below2, col))))
+                    .and(cells.compare(VectorOperators.NE, (byte) 0));
+            ZERO.blend(ONE, hits).intoArray(matched, col);
+            count += hits.trueCount();
+        }
+        for (; col < columns; col++) {
+            matched[col] = matchCell(above2, above, row, below, below2, col);
+            count += matched[col];
+        }
+        return count;
+    }
+}